@@ -0,0 +1,106 @@
+package com.ccl.jersey.codegen;
+
+import com.ccl.querydsl.data.entity.EBlog;
+import com.ccl.querydsl.data.model.Blog;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1万行实体与模型互转的基准测试：逐行反射查找字段的原实现与预编译转换计划对比
+ * <p>
+ * 运行：java -jar ccl-benchmarks/target/benchmarks.jar BeanConvertBenchmark
+ *
+ * @author ccl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BeanConvertBenchmark {
+
+    @Param({"10000"})
+    private int rows;
+
+    private List<EBlog> entities;
+
+    private List<Blog> models;
+
+    @Setup
+    public void setup() {
+        entities = new ArrayList<>(rows);
+        for (int i = 1; i <= rows; i++) {
+            EBlog blog = new EBlog();
+            blog.setId(i);
+            blog.setTitle("title " + i);
+            blog.setContent("content of blog " + i);
+            entities.add(blog);
+        }
+        models = BeanConvertUtils.convertEntityToModel(entities, Blog.class);
+    }
+
+    @Benchmark
+    public List<Blog> entityToModelPlan() {
+        return BeanConvertUtils.convertEntityToModel(entities, Blog.class);
+    }
+
+    @Benchmark
+    public List<Blog> entityToModelReflection() throws Exception {
+        List<Blog> answer = new ArrayList<>(entities.size());
+        BeanDesc beanDesc = BeanConvertUtils.getModelBeanDesc(Blog.class);
+        for (EBlog entity : entities) {
+            Blog model = Blog.class.newInstance();
+            for (PropertyDesc propertyDesc : beanDesc.getProperties()) {
+                Class<?> propertyType = propertyDesc.getType();
+                if ((BeanHelper.isPrimitive(propertyType) || propertyType.isEnum())
+                        && null == propertyDesc.getIgnoreProperty()) {
+                    Field field = FieldUtils.getField(entity.getClass(), propertyDesc.getName(), true);
+                    if (null != field) {
+                        Object value = FieldUtils.readField(entity, propertyDesc.getName(), true);
+                        if (null != value) {
+                            propertyDesc.setValue(model, DataTypeConvertUtils.convert(value, propertyType));
+                        }
+                    }
+                }
+            }
+            answer.add(model);
+        }
+        return answer;
+    }
+
+    @Benchmark
+    public List<EBlog> modelToEntityPlan() {
+        return BeanConvertUtils.convertModelToEntity(models, EBlog.class);
+    }
+
+    @Benchmark
+    public List<EBlog> modelToEntityReflection() throws Exception {
+        List<EBlog> answer = new ArrayList<>(models.size());
+        BeanDesc beanDesc = BeanConvertUtils.getModelBeanDesc(Blog.class);
+        for (Blog model : models) {
+            EBlog entity = EBlog.class.newInstance();
+            for (PropertyDesc propertyDesc : beanDesc.getProperties()) {
+                Class<?> propertyType = propertyDesc.getType();
+                if ((BeanHelper.isPrimitive(propertyType) || propertyType.isEnum())
+                        && null == propertyDesc.getIgnoreProperty()) {
+                    Field field = FieldUtils.getField(EBlog.class, propertyDesc.getName(), true);
+                    if (null != field) {
+                        Object value = propertyDesc.getValue(model);
+                        if (null != value) {
+                            FieldUtils.writeField(entity, propertyDesc.getName(),
+                                    DataTypeConvertUtils.convert(value, field.getType()), true);
+                        }
+                    }
+                }
+            }
+            answer.add(entity);
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,53 @@
+package com.ccl.jersey.codegen;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 基准测试用的H2内存库，建好blog表并写入测试数据
+ *
+ * @author ccl
+ */
+public final class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * @param name 库名，不同基准测试用不同的库互不影响
+     * @param rows blog表的行数
+     * @return 连接池
+     */
+    public static JdbcConnectionPool create(String name, int rows) {
+        JdbcConnectionPool dataSource = JdbcConnectionPool.create(
+                "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS blog");
+                statement.execute("CREATE TABLE blog (id INT NOT NULL PRIMARY KEY, "
+                        + "title VARCHAR(200) NOT NULL, content CLOB NOT NULL)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO blog (id, title, content) VALUES (?, ?, ?)")) {
+                for (int i = 1; i <= rows; i++) {
+                    statement.setInt(1, i);
+                    statement.setString(2, "title " + i);
+                    statement.setString(3, "content of blog " + i);
+                    statement.addBatch();
+                    if (0 == i % 1000) {
+                        statement.executeBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+        } catch (SQLException e) {
+            dataSource.dispose();
+            throw new RuntimeException("Create benchmark database failed", e);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ccl.jersey.codegen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基准测试入口：参数与JMH命令行相同，未指定结果格式时把结果写成JSON，便于在版本之间对比
+ * <p>
+ * 运行：java -jar ccl-benchmarks/target/benchmarks.jar [JMH参数]，结果默认写入 jmh-result.json；
+ * 对比：java -jar ccl-benchmarks/target/benchmarks.jar compare 上一版本.json 本版本.json [允许变慢的百分比]，
+ * 有基准变慢超过该百分比时以状态1退出。
+ *
+ * @author ccl
+ */
+public class BenchmarkReport {
+
+    static final String DEFAULT_RESULT = "jmh-result.json";
+
+    private static final double DEFAULT_THRESHOLD = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && "compare".equals(args[0])) {
+            double threshold = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_THRESHOLD;
+            System.exit(compare(new File(args[1]), new File(args[2]), threshold) ? 0 : 1);
+        }
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT);
+        }
+        Runner runner = new Runner(builder.build());
+        if (commandLine.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+
+    /**
+     * 逐项对比两份JSON结果并输出变化
+     *
+     * @param baseline  对比基准
+     * @param current   本次结果
+     * @param threshold 允许变慢的百分比
+     * @return 没有超过阈值的变慢
+     * @throws IOException
+     */
+    static boolean compare(File baseline, File current, double threshold) throws IOException {
+        Map<String, JsonNode> baselineScores = readScores(baseline);
+        Map<String, JsonNode> currentScores = readScores(current);
+        boolean passed = true;
+        System.out.println(String.format("%-80s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, JsonNode> entry : currentScores.entrySet()) {
+            JsonNode result = entry.getValue();
+            JsonNode metric = result.get("primaryMetric");
+            double score = metric.get("score").asDouble();
+            JsonNode previous = baselineScores.get(entry.getKey());
+            if (null == previous) {
+                System.out.println(String.format("%-80s %14s %14.3f %9s %s", entry.getKey(), "-", score, "new",
+                        metric.get("scoreUnit").asText()));
+                continue;
+            }
+            double previousScore = previous.get("primaryMetric").get("score").asDouble();
+            double change = 0 == previousScore ? 0 : (score - previousScore) * 100 / previousScore;
+            // 吞吐量模式分数越高越好，其余模式是耗时，分数越低越好
+            double slowdown = "thrpt".equals(result.get("mode").asText()) ? -change : change;
+            boolean regressed = slowdown > threshold;
+            passed &= !regressed;
+            System.out.println(String.format("%-80s %14.3f %14.3f %+8.1f%% %s%s", entry.getKey(), previousScore,
+                    score, change, metric.get("scoreUnit").asText(), regressed ? "  REGRESSION" : ""));
+        }
+        return passed;
+    }
+
+    private static Map<String, JsonNode> readScores(File file) throws IOException {
+        Map<String, JsonNode> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder name = new StringBuilder(result.get("benchmark").asText());
+            JsonNode params = result.get("params");
+            if (null != params) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    name.append(':').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            name.append(' ').append(result.get("mode").asText());
+            scores.put(name.toString(), result);
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,65 @@
+package com.ccl.jersey.codegen;
+
+import com.ccl.querydsl.data.query.QBlog;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存键计算的基准测试：原先的 toString + MD5 与结构化指纹对比
+ * <p>
+ * 运行(在根目录，-am 同时构建依赖的 ccl-jersey-jetty-web)：mvn -pl ccl-benchmarks -am package && java -jar ccl-benchmarks/target/benchmarks.jar CacheKeyBenchmark -prof gc
+ *
+ * @author ccl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheKeyBenchmark {
+
+    private static final String CACHE_KEY_SEPARATOR = ":";
+
+    private QBlog blog;
+
+    private Predicate predicate;
+
+    private OrderSpecifier<?>[] orders;
+
+    @Setup
+    public void setup() {
+        blog = QBlog.blog;
+        predicate = blog.title.like("%querydsl%")
+                .and(blog.id.in(Arrays.asList(1, 2, 3, 5, 8, 13)))
+                .and(blog.content.isNotNull().or(blog.id.gt(100)));
+        orders = new OrderSpecifier<?>[]{blog.id.desc(), blog.title.asc()};
+    }
+
+    @Benchmark
+    public String md5Key() {
+        StringBuilder queryString = new StringBuilder();
+        queryString.append("findAll").append(CACHE_KEY_SEPARATOR);
+        queryString.append(blog.getSchemaName()).append(CACHE_KEY_SEPARATOR).append(blog.getTableName());
+        queryString.append(CACHE_KEY_SEPARATOR).append(predicate);
+        for (OrderSpecifier<?> orderSpecifier : orders) {
+            queryString.append(CACHE_KEY_SEPARATOR).append(orderSpecifier);
+        }
+        queryString.append(CACHE_KEY_SEPARATOR).append(0).append(CACHE_KEY_SEPARATOR).append(20);
+        return DigestUtils.md5Hex(queryString.toString());
+    }
+
+    @Benchmark
+    public String fingerprintKey() {
+        QueryFingerprint fingerprint = QueryFingerprint.start("findAll").putTable(blog).putExpression(predicate);
+        for (OrderSpecifier<?> orderSpecifier : orders) {
+            fingerprint.putOrder(orderSpecifier);
+        }
+        return fingerprint.putInt(0).putInt(20).toKey();
+    }
+}
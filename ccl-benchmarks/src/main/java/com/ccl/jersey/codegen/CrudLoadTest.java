@@ -0,0 +1,190 @@
+package com.ccl.jersey.codegen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CRUD接口压测：多个线程按比例调用 /querydsl 下的查询和增改删接口，输出各接口的吞吐量和p50/p90/p99/p999延迟
+ * <p>
+ * 运行：java -cp ccl-benchmarks/target/benchmarks.jar com.ccl.jersey.codegen.CrudLoadTest [地址] [线程数] [秒数] [每秒请求数]
+ * <p>
+ * 默认地址为 http://localhost:8088/rest，每秒请求数为0时各线程收到响应后立即发下一个请求；
+ * 大于0时按固定速率发送，延迟从计划发送时间算起，服务变慢时排队的时间也计入延迟。
+ *
+ * @author ccl
+ */
+public class CrudLoadTest {
+
+    private static final int WARMUP_SECONDS = 5;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
+    /**
+     * 调用的接口及比例：查询占七成，增改删各占一成
+     */
+    private static final Operation[] OPERATIONS = {
+            new Operation("GET", "/querydsl/list", 70),
+            new Operation("PUT", "/querydsl/user", 10),
+            new Operation("POST", "/querydsl/user", 10),
+            new Operation("DELETE", "/querydsl/user", 10)
+    };
+
+    private static final int TOTAL_WEIGHT = totalWeight();
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8088/rest";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        double rate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+        System.out.println(String.format("Warm up %ds against %s with %d threads", WARMUP_SECONDS, baseUrl,
+                threads));
+        run(baseUrl, threads, WARMUP_SECONDS, rate);
+        for (Operation operation : OPERATIONS) {
+            operation.reset();
+        }
+        System.out.println(String.format("Measure %ds%s", seconds,
+                rate > 0 ? String.format(" at %.0f requests/s", rate) : ""));
+        run(baseUrl, threads, seconds, rate);
+        report(seconds);
+    }
+
+    private static void run(String baseUrl, int threads, int seconds, double rate) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        // 固定速率时每个线程负责总速率的一份
+        long intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * threads / rate) : 0;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    long intended = System.nanoTime();
+                    while (System.nanoTime() < end) {
+                        if (intervalNanos > 0) {
+                            long wait = intended - System.nanoTime();
+                            if (wait > 0) {
+                                LockSupport.parkNanos(wait);
+                            }
+                        } else {
+                            intended = System.nanoTime();
+                        }
+                        Operation operation = choose();
+                        boolean success = call(baseUrl, operation);
+                        operation.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended), success);
+                        intended += intervalNanos;
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+    }
+
+    private static boolean call(String baseUrl, Operation operation) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + operation.path).openConnection();
+            connection.setRequestMethod(operation.method);
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            connection.setRequestProperty("Accept", "application/json");
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            int status = connection.getResponseCode();
+            // 读完响应体，连接才能放回长连接池复用
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return status < 400;
+        } catch (IOException e) {
+            if (null != connection) {
+                try {
+                    drain(connection.getErrorStream());
+                } catch (IOException ignored) {
+                }
+            }
+            return false;
+        }
+    }
+
+    private static void drain(InputStream inputStream) throws IOException {
+        if (null == inputStream) {
+            return;
+        }
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) {
+                // 丢弃
+            }
+        }
+    }
+
+    private static Operation choose() {
+        int value = ThreadLocalRandom.current().nextInt(TOTAL_WEIGHT);
+        for (Operation operation : OPERATIONS) {
+            value -= operation.weight;
+            if (value < 0) {
+                return operation;
+            }
+        }
+        return OPERATIONS[0];
+    }
+
+    private static void report(int seconds) {
+        System.out.println(String.format("%-24s %9s %9s %8s %10s %10s %10s %10s", "Operation", "Requests",
+                "Req/s", "Errors", "p50(ms)", "p90(ms)", "p99(ms)", "p999(ms)"));
+        for (Operation operation : OPERATIONS) {
+            long requests = operation.requests.get();
+            System.out.println(String.format("%-24s %9d %9.1f %8d %10.2f %10.2f %10.2f %10.2f",
+                    operation.method + " " + operation.path,
+                    requests, requests / (double) seconds, operation.errors.get(),
+                    operation.histogram.percentile(50) / 1000.0, operation.histogram.percentile(90) / 1000.0,
+                    operation.histogram.percentile(99) / 1000.0, operation.histogram.percentile(99.9) / 1000.0));
+        }
+    }
+
+    private static int totalWeight() {
+        int total = 0;
+        for (Operation operation : OPERATIONS) {
+            total += operation.weight;
+        }
+        return total;
+    }
+
+    private static final class Operation {
+        private final String method;
+        private final String path;
+        private final int weight;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+        Operation(String method, String path, int weight) {
+            this.method = method;
+            this.path = path;
+            this.weight = weight;
+        }
+
+        void record(long micros, boolean success) {
+            histogram.record(micros);
+            requests.incrementAndGet();
+            if (!success) {
+                errors.incrementAndGet();
+            }
+        }
+
+        void reset() {
+            histogram.reset();
+            requests.set(0);
+            errors.set(0);
+        }
+    }
+}
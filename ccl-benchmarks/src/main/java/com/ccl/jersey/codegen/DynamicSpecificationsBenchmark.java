@@ -0,0 +1,57 @@
+package com.ccl.jersey.codegen;
+
+import com.ccl.querydsl.data.entity.EBlog;
+import com.ccl.querydsl.data.query.QBlog;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.PathBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由 {@link Filter} 和示例实体生成查询条件的基准测试
+ * <p>
+ * 运行：java -jar ccl-benchmarks/target/benchmarks.jar DynamicSpecificationsBenchmark
+ *
+ * @author ccl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DynamicSpecificationsBenchmark {
+
+    private QBlog root;
+
+    private PathBuilder<EBlog> builder;
+
+    private Filter filter;
+
+    private EBlog example;
+
+    @Setup
+    public void setup() {
+        root = QBlog.blog;
+        builder = SimpleEntityPathResolver.INSTANCE.getPathBuilder(root);
+        filter = Filter.condition().like("title", "%querydsl%").greaterThan("id", 100)
+                .in("id", Arrays.asList(1, 2, 3, 5, 8, 13));
+        example = new EBlog();
+        example.setTitle("title 1");
+        example.setContent("content of blog 1");
+    }
+
+    @Benchmark
+    public Predicate bySearchFilter() {
+        return DynamicSpecifications.<EBlog>bySearchFilter(filter)
+                .toPredicate(root, builder, SimpleEntityPathResolver.INSTANCE);
+    }
+
+    @Benchmark
+    public Predicate byExample() {
+        return DynamicSpecifications.byExample(example)
+                .toPredicate(root, builder, SimpleEntityPathResolver.INSTANCE);
+    }
+}
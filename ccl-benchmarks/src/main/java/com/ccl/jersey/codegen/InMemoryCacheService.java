@@ -0,0 +1,121 @@
+package com.ccl.jersey.codegen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基准测试用的进程内 {@link SetCacheService}，代替Redis，过期时间只在读取时检查
+ *
+ * @author ccl
+ */
+public class InMemoryCacheService implements SetCacheService {
+
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> expireAt = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<Object>> sets = new ConcurrentHashMap<>();
+
+    @Override
+    public void set(String key, Object value, int seconds) {
+        values.put(key, value);
+        expire(key, seconds);
+    }
+
+    @Override
+    public void set(String key, Object value) {
+        values.put(key, value);
+        expireAt.remove(key);
+    }
+
+    @Override
+    public void expire(String key, int seconds) {
+        if (seconds > 0) {
+            expireAt.put(key, System.currentTimeMillis() + seconds * 1000L);
+        }
+    }
+
+    @Override
+    public Object get(String key) {
+        Long time = expireAt.get(key);
+        if (null != time && time < System.currentTimeMillis()) {
+            delete(key);
+            return null;
+        }
+        return values.get(key);
+    }
+
+    @Override
+    public Map<String, Object> getBulk(List<String> keys) {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        for (String key : keys) {
+            Object value = get(key);
+            if (null != value) {
+                answer.put(key, value);
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return null != get(key) || sets.containsKey(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        values.remove(key);
+        expireAt.remove(key);
+        sets.remove(key);
+    }
+
+    @Override
+    public void add(String key, Object value) {
+        sets.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(value);
+    }
+
+    @Override
+    public Object pop(String key) {
+        Set<Object> members = sets.get(key);
+        if (null == members) {
+            return null;
+        }
+        for (Object member : new ArrayList<>(members)) {
+            if (members.remove(member)) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void remove(String key, Object value) {
+        Set<Object> members = sets.get(key);
+        if (null != members) {
+            members.remove(value);
+        }
+    }
+
+    @Override
+    public long size(String key) {
+        Set<Object> members = sets.get(key);
+        return null == members ? 0 : members.size();
+    }
+
+    @Override
+    public boolean isMember(String key, Object value) {
+        Set<Object> members = sets.get(key);
+        return null != members && members.contains(value);
+    }
+
+    @Override
+    public Set<Object> members(String key) {
+        Set<Object> members = sets.get(key);
+        return null == members ? new HashSet<>() : new HashSet<>(members);
+    }
+}
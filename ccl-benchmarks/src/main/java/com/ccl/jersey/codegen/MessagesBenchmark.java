@@ -0,0 +1,62 @@
+package com.ccl.jersey.codegen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 国际化消息的基准测试：缓存的消息模板与每次解析 {@link MessageFormat} 对比
+ * <p>
+ * 运行：java -jar ccl-benchmarks/target/benchmarks.jar MessagesBenchmark
+ *
+ * @author ccl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessagesBenchmark {
+
+    private static final String KEY = "Benchmark.Persistence.Save.Error";
+
+    private static final String PLAIN_KEY = "Benchmark.Persistence.Query.Error";
+
+    private static final String PATTERN = "保存{0}失败，已影响{1,number,integer}行";
+
+    private Locale locale;
+
+    @Setup
+    public void setup() {
+        locale = Locale.SIMPLIFIED_CHINESE;
+        Map<String, Object> data = new HashMap<>();
+        data.put(KEY, PATTERN);
+        data.put(PLAIN_KEY, "查询失败");
+        Messages.addResource(data, locale);
+    }
+
+    @Benchmark
+    public String getMessage() {
+        return Messages.getMessage(KEY, locale, "blog", 3);
+    }
+
+    @Benchmark
+    public String getMessageWithoutArgs() {
+        return Messages.getMessage(PLAIN_KEY, locale);
+    }
+
+    @Benchmark
+    public String getMissingMessage() {
+        return Messages.getMessage("Benchmark.Missing", locale);
+    }
+
+    @Benchmark
+    public String messageFormat() {
+        return new MessageFormat(PATTERN, locale).format(new Object[]{"blog", 3});
+    }
+}
@@ -0,0 +1,52 @@
+package com.ccl.jersey.codegen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ObjectId} 生成与二进制互转的基准测试，生成分单线程和多线程两种
+ * <p>
+ * 运行：java -jar ccl-benchmarks/target/benchmarks.jar ObjectIdBenchmark
+ *
+ * @author ccl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectIdBenchmark {
+
+    private String id;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        id = ObjectId.get();
+        bytes = ObjectId.toBytes(id);
+    }
+
+    @Benchmark
+    public String get() {
+        return ObjectId.get();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String getContended() {
+        return ObjectId.get();
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return ObjectId.toBytes(id);
+    }
+
+    @Benchmark
+    public String toHexString() {
+        return ObjectId.toHexString(bytes);
+    }
+}
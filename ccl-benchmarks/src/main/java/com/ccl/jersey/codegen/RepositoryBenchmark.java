@@ -0,0 +1,96 @@
+package com.ccl.jersey.codegen;
+
+import com.ccl.querydsl.data.entity.EBlog;
+import com.ccl.querydsl.data.model.Blog;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 仓储读取的基准测试：H2内存库上经 {@link QueryDslConfig} 查询，分别测不带缓存和带进程内缓存两种仓储
+ * <p>
+ * 带缓存的结果主要是缓存键计算、缓存读取和模型转换的开销。
+ * 运行：java -jar ccl-benchmarks/target/benchmarks.jar RepositoryBenchmark
+ *
+ * @author ccl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+    @Param({"10000"})
+    private int rows;
+
+    private JdbcConnectionPool dataSource;
+
+    private BlogRepository repository;
+
+    private BlogRepository cachedRepository;
+
+    private Filter filter;
+
+    private Sort sort;
+
+    @Setup
+    public void setup() {
+        dataSource = BenchmarkDatabase.create("repository", rows);
+        QueryDslConfig queryDslConfig = new QueryDslConfig(dataSource);
+        repository = new BlogRepository(queryDslConfig, null);
+        cachedRepository = new BlogRepository(queryDslConfig, new InMemoryCacheService());
+        filter = Filter.condition().like("title", "title 1%").greaterThan("id", 100);
+        sort = Sort.condition().orderByDesc("id");
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.dispose();
+    }
+
+    @Benchmark
+    public Blog findModelById() {
+        return repository.findModelById(nextId());
+    }
+
+    @Benchmark
+    public Blog findModelByIdCached() {
+        return cachedRepository.findModelById(nextId());
+    }
+
+    @Benchmark
+    public List<Blog> findAllByModel() {
+        return repository.findAllByModel(1, 20, filter, sort, false).getContent();
+    }
+
+    @Benchmark
+    public List<Blog> findAllByModelCached() {
+        return cachedRepository.findAllByModel(1, 20, filter, sort, false).getContent();
+    }
+
+    @Benchmark
+    public Page<Blog> findAllByModelWithTotal() {
+        return repository.findAllByModel(2, 20, filter, sort, true);
+    }
+
+    private int nextId() {
+        return ThreadLocalRandom.current().nextInt(1, rows + 1);
+    }
+
+    /**
+     * 不经Spring装配的blog仓储，cacheService为null时不启用缓存
+     */
+    static class BlogRepository extends AbstractModelQueryAndBatchUpdateRepository<EBlog, Integer, Blog> {
+
+        BlogRepository(QueryDslConfig queryDslConfig, SetCacheService cacheService) {
+            super(queryDslConfig);
+            this.cacheService = cacheService;
+            this.hasCache = null != cacheService;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.ccl.jersey.codegen;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SimpleDataMap} 构建和按键查找的基准测试，覆盖不建索引的小映射和动态列结果的大映射
+ * <p>
+ * 运行：java -jar ccl-benchmarks/target/benchmarks.jar SimpleDataMapBenchmark
+ *
+ * @author ccl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimpleDataMapBenchmark {
+
+    @Param({"8", "64", "512"})
+    private int keys;
+
+    private String[] names;
+
+    private SimpleDataMap dataMap;
+
+    @Setup
+    public void setup() {
+        names = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            names[i] = "column_" + i;
+        }
+        dataMap = build();
+    }
+
+    @Benchmark
+    public SimpleDataMap put() {
+        return build();
+    }
+
+    @Benchmark
+    public void get(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(dataMap.get(name));
+        }
+    }
+
+    @Benchmark
+    public boolean containsMissingKey() {
+        return dataMap.containsKey("missing");
+    }
+
+    private SimpleDataMap build() {
+        SimpleDataMap answer = new SimpleDataMap();
+        for (int i = 0; i < names.length; i++) {
+            answer.put(names[i], i);
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,4 @@
+package com.ccl.jersey.codegen.generated;
+public class BeanConvertBenchmark_jmhType extends BeanConvertBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.ccl.jersey.codegen.generated;
+public class CacheKeyBenchmark_jmhType extends CacheKeyBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.ccl.jersey.codegen.generated;
+public class DynamicSpecificationsBenchmark_jmhType extends DynamicSpecificationsBenchmark_jmhType_B3 {
+}
+
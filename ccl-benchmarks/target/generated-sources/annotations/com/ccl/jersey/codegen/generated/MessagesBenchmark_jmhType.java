@@ -0,0 +1,4 @@
+package com.ccl.jersey.codegen.generated;
+public class MessagesBenchmark_jmhType extends MessagesBenchmark_jmhType_B3 {
+}
+
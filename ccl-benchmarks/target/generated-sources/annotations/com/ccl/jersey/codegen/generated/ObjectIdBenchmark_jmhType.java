@@ -0,0 +1,4 @@
+package com.ccl.jersey.codegen.generated;
+public class ObjectIdBenchmark_jmhType extends ObjectIdBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.ccl.jersey.codegen.generated;
+public class RepositoryBenchmark_jmhType extends RepositoryBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.ccl.jersey.codegen.generated;
+public class SimpleDataMapBenchmark_jmhType extends SimpleDataMapBenchmark_jmhType_B3 {
+}
+
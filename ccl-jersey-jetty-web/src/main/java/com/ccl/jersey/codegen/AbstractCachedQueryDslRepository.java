@@ -1,17 +1,51 @@
 package com.ccl.jersey.codegen;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.sql.MySQLTemplates;
+import com.querydsl.sql.OracleTemplates;
+import com.querydsl.sql.PostgreSQLTemplates;
 import com.querydsl.sql.RelationalPath;
-import org.apache.commons.codec.digest.DigestUtils;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.SQLTemplates;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MarkerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * @author ccl
@@ -25,144 +59,197 @@ public abstract class AbstractCachedQueryDslRepository<Entity extends IdEntity<I
 
     protected boolean hasCache;
 
+    /**
+     * 是否在远端缓存前启用进程内近端缓存
+     */
+    protected boolean hasNearCache = true;
+
+    /**
+     * 是否启用近似计数：不带条件计数时读取数据库的表统计信息，适用于精确计数代价很高的大表
+     */
+    protected boolean approximateCount;
+
+    /**
+     * 统计信息中的行数不低于该值时才使用近似计数，否则仍执行精确计数
+     */
+    protected long approximateCountThreshold = 1000000;
+
+    /**
+     * 是否在分页查询时用另一个连接与列表查询并行计数，只在事务外生效
+     */
+    protected boolean parallelCount;
+
     private static final int EXPIRE_SECONDS = 3600;
 
+    /**
+     * 缓存到期时间秒数
+     */
+    protected int expireSeconds = EXPIRE_SECONDS;
+
+    /**
+     * 剩余时间不超过该秒数的值在读取时提前后台刷新，0表示不启用
+     */
+    protected int refreshAheadSeconds;
+
+    private static final int REFRESH_THREADS = 4;
+
+    private static final int REFRESH_QUEUE_SIZE = 1000;
+
+    /**
+     * 正在查询数据库的键，同一个键同时只有一个线程查询
+     */
+    private static final ConcurrentHashMap<String, CompletableFuture<Object>> LOADINGS = new ConcurrentHashMap<>();
+
+    /**
+     * 提前刷新的后台线程池，队列满时放弃刷新，值到期后由读线程同步查询
+     */
+    private static final ThreadPoolExecutor REFRESH_EXECUTOR = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS,
+            60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE), runnable -> {
+        Thread thread = new Thread(runnable, "cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private static final String CACHE_KEY_SEPARATOR = "_";
 
+    private static final long NEAR_CACHE_MAX_ENTRIES = 10000;
+
+    private static final long NEAR_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * 近端缓存与远端模块集合对账的间隔，即其他节点写入后本节点读到旧值的最长时间
+     */
+    private static final long NEAR_CACHE_SYNC_MILLIS = 1000;
+
+    /**
+     * 模块代次的键后缀，与查询缓存键和实体缓存键不会重复
+     */
+    private static final String GENERATION_KEY_SUFFIX = "#generation";
+
+    /**
+     * 按秒分桶的失效键记录的键后缀，桶键为模块+后缀+秒数
+     */
+    private static final String EVICTION_LOG_KEY_SUFFIX = "#evicted#";
+
+    /**
+     * 失效键记录的保留秒数，超过这么久未对账的节点直接清空整个模块
+     */
+    private static final int EVICTION_LOG_SECONDS = 60;
+
+    /**
+     * 读取失效键记录时前后多读的秒数，容忍节点之间的时钟偏差
+     */
+    private static final int EVICTION_LOG_SKEW_SECONDS = 2;
+
+    /**
+     * 各模块上次读取失效键记录时的秒数
+     */
+    private static final ConcurrentHashMap<String, Long> EVICTION_LOG_SYNC_SECONDS = new ConcurrentHashMap<>();
+
+    private static final NearCache NEAR_CACHE = new NearCache(NEAR_CACHE_MAX_ENTRIES, NEAR_CACHE_MAX_BYTES);
+
+    static final String FIND_ONE = "findOne";
+
+    static final String FIND_ALL = "findAll";
+
+    static final String COUNT = "count";
+
+    private static final String ID_CACHE_KEY = "id";
+
+    /**
+     * 按主键IN查询时每条语句的主键数，不超过Oracle的1000个限制
+     */
+    private static final int ID_BATCH_SIZE = 500;
+
+    /**
+     * 主表模块，避免每次查询都拼接字符串
+     */
+    private final String rootModule = getModule(root);
+
+    private final List<String> rootModules = Collections.singletonList(rootModule);
+
+    /**
+     * 按主键缓存的实体单独登记在这个模块下，写入时逐行失效，不随查询缓存整表清除
+     */
+    private final String idModule = rootModule + CACHE_KEY_SEPARATOR + ID_CACHE_KEY;
+
+    private final List<String> idModules = Collections.singletonList(idModule);
+
+    private final TransactionTemplate refreshTransactionTemplate;
+
     public AbstractCachedQueryDslRepository(DataSource dataSource) {
         super(dataSource);
+        refreshTransactionTemplate = createRefreshTransactionTemplate();
     }
 
     public AbstractCachedQueryDslRepository(QueryDslConfig queryDslConfig) {
         super(queryDslConfig);
+        refreshTransactionTemplate = createRefreshTransactionTemplate();
+    }
+
+    private TransactionTemplate createRefreshTransactionTemplate() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(queryDslConfig.getDataSource()));
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Tuple findOne(List<AssociatedTable> tables, List<Predicate> predicates, OrderSpecifier<?>... orders) {
-        String md5Hex = null;
-        if (hasCache && null != cacheService) {
-            StringBuilder queryString = new StringBuilder();
-            queryString.append("findOne").append(CACHE_KEY_SEPARATOR);
-            if (null != tables) {
-                for (AssociatedTable associatedTable : tables) {
-                    queryString.append(getModule(associatedTable.getEntityPath())).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-            if (null != predicates) {
-                for (Predicate predicate : predicates) {
-                    queryString.append(predicate).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-
-            md5Hex = DigestUtils.md5Hex(queryString.toString());
-            Object value = cacheService.get(md5Hex);
-            if (null != value) {
-                return (Tuple) value;
-            }
-        }
-
-        Tuple one = super.findOne(tables, predicates, orders);
-
-        if (hasCache && null != cacheService && null != one) {
-            cacheService.set(md5Hex, one, EXPIRE_SECONDS);
-            for (AssociatedTable associatedTable : tables) {
-                putToClearDatas(getModule(associatedTable.getEntityPath()), md5Hex);
-            }
+        if (!hasCache || null == cacheService) {
+            return super.findOne(tables, predicates, orders);
         }
-        return one;
+        String key = buildKey(FIND_ONE, tables, predicates, orders).toKey();
+        return loadCachedData(key, getModules(tables), () -> super.findOne(tables, predicates, orders));
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long count(List<AssociatedTable> tables, Predicate... predicates) {
-        return super.count(tables, predicates);
+        if (!hasCache || null == cacheService) {
+            return countWithApproximate(tables, predicates);
+        }
+        List<Predicate> predicateList = null == predicates ? null : Arrays.asList(predicates);
+        String key = buildKey(COUNT, tables, predicateList, null).toKey();
+        Long count = loadCachedData(key, getModules(tables), () -> countWithApproximate(tables, predicates));
+        return count;
     }
 
-    @Override
-    public List<Tuple> findAll(List<AssociatedTable> tables, List<Predicate> predicates, OrderSpecifier<?>... orders) {
-        String md5Hex = null;
-        if (hasCache && null != cacheService) {
-            StringBuilder queryString = new StringBuilder();
-            queryString.append("findAll").append(CACHE_KEY_SEPARATOR);
-            if (null != tables) {
-                for (AssociatedTable associatedTable : tables) {
-                    queryString.append(getModule(associatedTable.getEntityPath())).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-            if (null != predicates) {
-                for (Predicate predicate : predicates) {
-                    queryString.append(predicate).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-            if (null != orders) {
-                for (OrderSpecifier orderSpecifier : orders) {
-                    queryString.append(orderSpecifier).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-            md5Hex = DigestUtils.md5Hex(queryString.toString());
-            Object value = cacheService.get(md5Hex);
-            if (null != value) {
-                return (List<Tuple>) value;
-            }
+    private long countWithApproximate(List<AssociatedTable> tables, Predicate... predicates) {
+        // 关联表均为多对一的左连接，不带条件时行数与主表相同
+        long count = null == predicates || 0 == predicates.length ? approximateCount() : -1;
+        if (count < approximateCountThreshold) {
+            count = super.count(tables, predicates);
         }
+        return count;
+    }
 
-        List<Tuple> all = super.findAll(tables, predicates, orders);
-
-        if (hasCache && null != cacheService) {
-            cacheService.set(md5Hex, all, EXPIRE_SECONDS);
-            for (AssociatedTable associatedTable : tables) {
-                putToClearDatas(getModule(associatedTable.getEntityPath()), md5Hex);
-            }
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<Tuple> findAll(List<AssociatedTable> tables, List<Predicate> predicates, OrderSpecifier<?>... orders) {
+        if (!hasCache || null == cacheService) {
+            return super.findAll(tables, predicates, orders);
         }
-        return all;
+        String key = buildKey(FIND_ALL, tables, predicates, orders).toKey();
+        return loadCachedData(key, getModules(tables), () -> super.findAll(tables, predicates, orders));
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Tuple> findAll(List<AssociatedTable> tables, List<Predicate> predicates, int page, int size, OrderSpecifier<?>... orders) {
-        String md5Hex = null;
-        if (hasCache && null != cacheService) {
-            StringBuilder queryString = new StringBuilder();
-            queryString.append("findAll").append(CACHE_KEY_SEPARATOR);
-            if (null != tables) {
-                for (AssociatedTable associatedTable : tables) {
-                    queryString.append(getModule(associatedTable.getEntityPath())).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-            if (null != predicates) {
-                for (Predicate predicate : predicates) {
-                    queryString.append(predicate).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-            if (null != orders) {
-                for (OrderSpecifier orderSpecifier : orders) {
-                    queryString.append(orderSpecifier).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-            queryString.append(page).append(CACHE_KEY_SEPARATOR).append(size).append(CACHE_KEY_SEPARATOR);
-            md5Hex = DigestUtils.md5Hex(queryString.toString());
-            Object value = cacheService.get(md5Hex);
-            if (null != value) {
-                return (List<Tuple>) value;
-            }
-        }
-
-        List<Tuple> all = super.findAll(tables, predicates, page, size, orders);
-
-        if (hasCache && null != cacheService) {
-            cacheService.set(md5Hex, all, EXPIRE_SECONDS);
-            for (AssociatedTable associatedTable : tables) {
-                putToClearDatas(getModule(associatedTable.getEntityPath()), md5Hex);
-            }
+        if (!hasCache || null == cacheService) {
+            return super.findAll(tables, predicates, page, size, orders);
         }
-        return all;
+        String key = buildKey(FIND_ALL, tables, predicates, orders).putInt(page).putInt(size).toKey();
+        return loadCachedData(key, getModules(tables), () -> super.findAll(tables, predicates, page, size, orders));
     }
 
     @Override
     public long updateAll(Entity entity, List<AssociatedTable> tables, Predicate... predicates) {
         long l = super.updateAll(entity, tables, predicates);
         if (hasCache && null != cacheService) {
-            for (AssociatedTable associatedTable : tables) {
-                clearCachedDatas(getModule(associatedTable.getEntityPath()));
-            }
+            clearRootCachedDatas();
         }
         return l;
     }
@@ -172,9 +259,7 @@ public abstract class AbstractCachedQueryDslRepository<Entity extends IdEntity<I
     public long deleteAll(List<AssociatedTable> tables, Predicate... predicates) {
         long l = super.deleteAll(tables, predicates);
         if (hasCache && null != cacheService) {
-            for (AssociatedTable associatedTable : tables) {
-                clearCachedDatas(getModule(associatedTable.getEntityPath()));
-            }
+            clearRootCachedDatas();
         }
         return l;
     }
@@ -183,7 +268,7 @@ public abstract class AbstractCachedQueryDslRepository<Entity extends IdEntity<I
     public void create(Entity entity) {
         super.create(entity);
         if (hasCache && null != cacheService) {
-            clearCachedDatas(getModule(root));
+            clearCachedDatas(rootModule);
         }
     }
 
@@ -191,119 +276,248 @@ public abstract class AbstractCachedQueryDslRepository<Entity extends IdEntity<I
     public void create(Collection<Entity> entities) {
         super.create(entities);
         if (hasCache && null != cacheService) {
-            clearCachedDatas(getModule(root));
+            clearCachedDatas(rootModule);
         }
     }
 
     @Override
-    public void update(Entity entity, boolean withNullBindings) {
-        super.update(entity, withNullBindings);
-        if (hasCache && null != cacheService) {
-            clearCachedDatas(getModule(root));
-        }
+    public void upsert(Entity entity) {
+        upsert(Collections.singletonList(entity));
     }
 
     @Override
-    public void update(Collection<Entity> entities, boolean withNullBindings) {
-        super.update(entities, withNullBindings);
-        if (hasCache && null != cacheService) {
-            clearCachedDatas(getModule(root));
+    public void upsert(Collection<Entity> entities) {
+        super.upsert(entities);
+        if (hasCache && null != cacheService && null != entities && !entities.isEmpty()) {
+            List<ID> ids = new ArrayList<>(entities.size());
+            for (Entity entity : entities) {
+                ids.add(entity.getId());
+            }
+            evictCachedEntities(ids);
+            clearCachedDatas(rootModule);
         }
     }
 
     @Override
-    public Entity findOne(Predicate predicate, OrderSpecifier<?>... orders) {
-        String md5Hex = null;
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BulkWriteResult<ID> createInBulk(Collection<Entity> entities, BulkWriteOptions options) {
+        BulkWriteResult<ID> result = super.createInBulk(entities, options);
         if (hasCache && null != cacheService) {
-            StringBuilder queryString = new StringBuilder();
-            queryString.append("findOne").append(CACHE_KEY_SEPARATOR);
-            queryString.append(getModule(root)).append(CACHE_KEY_SEPARATOR);
-            queryString.append(predicate).append(CACHE_KEY_SEPARATOR);
-            md5Hex = DigestUtils.md5Hex(queryString.toString());
-            Object value = cacheService.get(md5Hex);
-            if (null != value) {
-                return (Entity) value;
-            }
+            clearCachedDatas(rootModule);
         }
+        return result;
+    }
 
-        Entity one = super.findOne(predicate, orders);
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BulkWriteResult<ID> updateInBulk(Collection<Entity> entities, boolean withNullBindings,
+                                            BulkWriteOptions options) {
+        // 每批经由updateRows写入，缓存在那里清除
+        return super.updateInBulk(entities, withNullBindings, options);
+    }
 
-        if (hasCache && null != cacheService && null != one) {
-            cacheService.set(md5Hex, one, EXPIRE_SECONDS);
-            putToClearDatas(getModule(root), md5Hex);
+    @Override
+    public void update(Entity entity, boolean withNullBindings) {
+        super.update(entity, withNullBindings);
+        if (hasCache && null != cacheService) {
+            evictCachedEntities(Collections.singletonList(entity.getId()));
+            clearCachedDatas(rootModule);
         }
-        return one;
     }
 
     @Override
-    public List<Entity> findAll(Predicate predicate, OrderSpecifier<?>... orders) {
-        String md5Hex = null;
+    protected long updateRows(Collection<Entity> entities, boolean withNullBindings) {
+        long count = super.updateRows(entities, withNullBindings);
         if (hasCache && null != cacheService) {
-            StringBuilder queryString = new StringBuilder();
-            queryString.append("findAll").append(CACHE_KEY_SEPARATOR);
-            queryString.append(getModule(root)).append(CACHE_KEY_SEPARATOR);
-            queryString.append(predicate).append(CACHE_KEY_SEPARATOR);
-            if (null != orders) {
-                for (OrderSpecifier orderSpecifier : orders) {
-                    queryString.append(orderSpecifier).append(CACHE_KEY_SEPARATOR);
-                }
-            }
-            md5Hex = DigestUtils.md5Hex(queryString.toString());
-            Object value = cacheService.get(md5Hex);
-            if (null != value) {
-                return (List<Entity>) value;
+            List<ID> ids = new ArrayList<>(entities.size());
+            for (Entity entity : entities) {
+                ids.add(entity.getId());
             }
+            evictCachedEntities(ids);
+            clearCachedDatas(rootModule);
         }
+        return count;
+    }
 
-        List<Entity> all = super.findAll(predicate, orders);
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Entity findOne(Predicate predicate, OrderSpecifier<?>... orders) {
+        if (!hasCache || null == cacheService) {
+            return super.findOne(predicate, orders);
+        }
+        String key = buildKey(FIND_ONE, predicate, orders).toKey();
+        return loadCachedData(key, rootModules, () -> super.findOne(predicate, orders));
+    }
 
-        if (hasCache && null != cacheService) {
-            cacheService.set(md5Hex, all, EXPIRE_SECONDS);
-            putToClearDatas(getModule(root), md5Hex);
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<Entity> findAll(Predicate predicate, OrderSpecifier<?>... orders) {
+        if (!hasCache || null == cacheService) {
+            return super.findAll(predicate, orders);
         }
-        return all;
+        String key = buildKey(FIND_ALL, predicate, orders).toKey();
+        return loadCachedData(key, rootModules, () -> super.findAll(predicate, orders));
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Entity> findAll(Predicate predicate, int page, int size, OrderSpecifier<?>... orders) {
-        String md5Hex = null;
-        if (hasCache && null != cacheService) {
-            StringBuilder queryString = new StringBuilder();
-            queryString.append("findAll").append(CACHE_KEY_SEPARATOR);
-            queryString.append(getModule(root)).append(CACHE_KEY_SEPARATOR);
-            queryString.append(predicate).append(CACHE_KEY_SEPARATOR);
-            if (null != orders) {
-                for (OrderSpecifier orderSpecifier : orders) {
-                    queryString.append(orderSpecifier).append(CACHE_KEY_SEPARATOR);
-                }
+        if (!hasCache || null == cacheService) {
+            return super.findAll(predicate, page, size, orders);
+        }
+        String key = buildKey(FIND_ALL, predicate, orders).putInt(page).putInt(size).toKey();
+        return loadCachedData(key, rootModules, () -> super.findAll(predicate, page, size, orders));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public long count(Predicate predicate) {
+        if (!hasCache || null == cacheService) {
+            return countWithApproximate(predicate);
+        }
+        String key = buildKey(COUNT, predicate, null).toKey();
+        Long count = loadCachedData(key, rootModules, () -> countWithApproximate(predicate));
+        return count;
+    }
+
+    private long countWithApproximate(Predicate predicate) {
+        long count = null == predicate ? approximateCount() : -1;
+        if (count < approximateCountThreshold) {
+            count = super.count(predicate);
+        }
+        return count;
+    }
+
+    /**
+     * 分页查询：先取本页，本页不满且非空(或为首页)时总数可直接算出，不再计数；
+     * 启用并行计数时计数与本页查询同时执行
+     *
+     * @param page
+     * @param size
+     * @param sort
+     * @param withTotal 为false时不计数，总数为-1
+     * @param counter   计数
+     * @param fetcher   查询本页
+     * @return
+     */
+    <T> Page<T> queryPage(int page, int size, Sort sort, boolean withTotal, Supplier<Long> counter,
+                          Supplier<List<T>> fetcher) {
+        Page<T> p = new Page<>(null, page, size, sort, -1);
+        CompletableFuture<Long> countFuture = null;
+        if (withTotal && parallelCount && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            AsyncExecutor asyncExecutor = queryDslConfig.getAsyncExecutor();
+            // 已在执行器上(如经由异步门面调用)时在当前线程计数，避免执行线程都在等待排队中的计数
+            if (!asyncExecutor.inExecutor()) {
+                countFuture = asyncExecutor.supply(counter);
             }
-            queryString.append(page).append(CACHE_KEY_SEPARATOR).append(size).append(CACHE_KEY_SEPARATOR);
-            md5Hex = DigestUtils.md5Hex(queryString.toString());
-            Object value = cacheService.get(md5Hex);
-            if (null != value) {
-                return (List<Entity>) value;
+        }
+        List<T> list = fetcher.get();
+        p.setContent(new ArrayList<>(list));
+        if (!withTotal) {
+            return p;
+        }
+        if (list.size() < p.getSize() && (!list.isEmpty() || 1 == p.getPage())) {
+            if (null != countFuture) {
+                countFuture.cancel(false);
+            }
+            p.setTotalElements((p.getPage() - 1) * (long) p.getSize() + list.size());
+        } else if (null != countFuture) {
+            try {
+                p.setTotalElements(countFuture.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    // 异步执行器已满时在当前线程计数
+                    p.setTotalElements(counter.get());
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else {
+                    throw e;
+                }
             }
+        } else {
+            p.setTotalElements(counter.get());
         }
+        return p;
+    }
 
-        List<Entity> all = super.findAll(predicate, page, size, orders);
-
-        if (hasCache && null != cacheService) {
-            cacheService.set(md5Hex, all, EXPIRE_SECONDS);
-            putToClearDatas(getModule(root), md5Hex);
+    /**
+     * 分页逐行处理：本页读完、游标关闭后再计数，本页不满且非空(或为首页)时总数直接算出
+     *
+     * @param page
+     * @param size
+     * @param sort
+     * @param withTotal 为false时不计数，总数为-1
+     * @param counter   计数
+     * @param iterator  打开本页的游标
+     * @param action    处理每一行
+     * @return 不含内容的分页信息
+     */
+    <T> Page<T> forEachPage(int page, int size, Sort sort, boolean withTotal, Supplier<Long> counter,
+                            Supplier<CloseableIterator<T>> iterator, Consumer<? super T> action) {
+        Page<T> p = new Page<>(null, page, size, sort, -1);
+        int count = forEachRow(iterator, action);
+        if (!withTotal) {
+            return p;
         }
-        return all;
+        if (count < p.getSize() && (count > 0 || 1 == p.getPage())) {
+            p.setTotalElements((p.getPage() - 1) * (long) p.getSize() + count);
+        } else {
+            p.setTotalElements(counter.get());
+        }
+        return p;
     }
 
-    @Override
-    public long count(Predicate predicate) {
-        return super.count(predicate);
+    /**
+     * 从数据库的表统计信息读取主表的近似行数，未启用或无法读取时返回-1
+     *
+     * @return
+     */
+    long approximateCount() {
+        if (!approximateCount) {
+            return -1;
+        }
+        return read(new Query() {
+            @Override
+            public Long executeQuery(SQLQueryFactory sqlQuery) {
+                String schema = root.getSchemaName();
+                if (StringUtils.isBlank(schema) || "null".equals(schema)) {
+                    schema = null;
+                }
+                SQLTemplates templates = sqlQueryFactory.getConfiguration().getTemplates();
+                String sql;
+                if (templates instanceof MySQLTemplates) {
+                    sql = "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_NAME = ? AND TABLE_SCHEMA = "
+                            + (null == schema ? "DATABASE()" : "?");
+                } else if (templates instanceof PostgreSQLTemplates) {
+                    sql = "SELECT CAST(c.reltuples AS BIGINT) FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace"
+                            + " WHERE c.relname = ? AND n.nspname = " + (null == schema ? "current_schema()" : "?");
+                } else if (templates instanceof OracleTemplates) {
+                    sql = "SELECT NUM_ROWS FROM ALL_TABLES WHERE TABLE_NAME = UPPER(?) AND OWNER = "
+                            + (null == schema ? "USER" : "UPPER(?)");
+                } else {
+                    return -1L;
+                }
+                Connection connection = sqlQuery.getConnection();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, root.getTableName());
+                    if (null != schema) {
+                        statement.setString(2, schema);
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        return resultSet.next() ? resultSet.getLong(1) : -1L;
+                    }
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
     }
 
     @Override
     public long updateAll(Entity entity, Predicate predicate) {
         long l = super.updateAll(entity, predicate);
         if (hasCache && null != cacheService) {
-            clearCachedDatas(getModule(root));
+            clearRootCachedDatas();
         }
         return l;
     }
@@ -312,30 +526,446 @@ public abstract class AbstractCachedQueryDslRepository<Entity extends IdEntity<I
     public long deleteAll(Predicate predicate) {
         long l = super.deleteAll(predicate);
         if (hasCache && null != cacheService) {
-            clearCachedDatas(getModule(root));
+            clearRootCachedDatas();
         }
         return l;
     }
 
+    /**
+     * 按主键删除，只失效这些主键的实体缓存
+     *
+     * @param ids
+     * @return
+     */
+    long deleteAllByIds(Collection<ID> ids) {
+        long l = super.deleteAll(idPath.in(ids));
+        if (hasCache && null != cacheService) {
+            evictCachedEntities(ids);
+            clearCachedDatas(rootModule);
+        }
+        return l;
+    }
+
+    /**
+     * 按主键查询，优先使用主键缓存
+     *
+     * @param id
+     * @return
+     */
+    Entity findCachedById(ID id) {
+        if (!hasCache || null == cacheService) {
+            return super.findOne(idPath.eq(id));
+        }
+        String key = getIdKey(id);
+        return loadCachedData(key, idModules, () -> super.findOne(idPath.eq(id)));
+    }
+
+    /**
+     * 按主键批量查询，缓存未命中的主键按 {@link #ID_BATCH_SIZE} 分批IN查询，结果按传入主键的顺序返回
+     *
+     * @param ids
+     * @return
+     */
+    List<Entity> findCachedByIds(Collection<ID> ids) {
+        if (!hasCache || null == cacheService) {
+            return findAllByIds(ids);
+        }
+        Map<ID, Entity> found = new HashMap<>(ids.size() * 2);
+        Map<String, ID> missKeys = new LinkedHashMap<>();
+        if (hasNearCache) {
+            syncNearCache(idModule);
+        }
+        for (ID id : ids) {
+            String key = getIdKey(id);
+            CachedValue value = hasNearCache ? (CachedValue) NEAR_CACHE.get(key) : null;
+            if (null != value) {
+                found.put(id, (Entity) value.value);
+            } else {
+                missKeys.put(key, id);
+            }
+        }
+        if (!missKeys.isEmpty()) {
+            Map<String, Object> values = cacheService.getBulk(new ArrayList<>(missKeys.keySet()));
+            if (null != values) {
+                for (Map.Entry<String, Object> entry : values.entrySet()) {
+                    CachedValue value = toCachedValue(entry.getValue());
+                    ID id = null == value ? null : missKeys.remove(entry.getKey());
+                    if (null != id) {
+                        found.put(id, (Entity) value.value);
+                        if (hasNearCache) {
+                            NEAR_CACHE.put(entry.getKey(), value, value.remainingSeconds(), idModules);
+                        }
+                    }
+                }
+            }
+        }
+        if (!missKeys.isEmpty()) {
+            List<Entity> loaded = findAllByIds(missKeys.values());
+            Map<String, Object> values = new HashMap<>(loaded.size() * 2);
+            long expireAt = System.currentTimeMillis() + expireSeconds * 1000L;
+            for (Entity entity : loaded) {
+                found.put(entity.getId(), entity);
+                values.put(getIdKey(entity.getId()), new CachedValue(entity, expireAt));
+            }
+            putCachedDatas(values, idModules);
+        }
+        List<Entity> all = new ArrayList<>(found.size());
+        for (ID id : ids) {
+            Entity entity = found.get(id);
+            if (null != entity) {
+                all.add(entity);
+            }
+        }
+        return all;
+    }
+
+    private List<Entity> findAllByIds(Collection<ID> ids) {
+        List<ID> list = new ArrayList<>(ids);
+        List<Entity> all = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i += ID_BATCH_SIZE) {
+            all.addAll(super.findAll(idPath.in(list.subList(i, Math.min(i + ID_BATCH_SIZE, list.size())))));
+        }
+        return all;
+    }
+
     @Override
     public <T> T query(Query query) {
         return super.query(query);
     }
 
+    /**
+     * 启用缓存时查询留在主库，避免把副本上尚未同步的数据写入缓存
+     *
+     * @return
+     */
+    @Override
+    protected boolean isReplicaReadAllowed() {
+        return !hasCache || null == cacheService;
+    }
+
+
+    /**
+     * 根据查询结构计算缓存键的指纹，不依赖表达式的字符串形式
+     */
+    QueryFingerprint buildKey(String operation, Predicate predicate, OrderSpecifier<?>[] orders) {
+        QueryFingerprint fingerprint = QueryFingerprint.start(operation).putTable(root);
+        fingerprint.putExpression(predicate);
+        putOrders(fingerprint, orders);
+        return fingerprint;
+    }
+
+    QueryFingerprint buildKey(String operation, List<AssociatedTable> tables, List<Predicate> predicates,
+                              OrderSpecifier<?>[] orders) {
+        QueryFingerprint fingerprint = QueryFingerprint.start(operation).putTable(root);
+        if (null != tables) {
+            fingerprint.putInt(tables.size());
+            for (AssociatedTable associatedTable : tables) {
+                fingerprint.putTable(associatedTable.getEntityPath());
+                fingerprint.putExpression(associatedTable.getOn());
+            }
+        }
+        if (null != predicates) {
+            fingerprint.putInt(predicates.size());
+            for (Predicate predicate : predicates) {
+                fingerprint.putExpression(predicate);
+            }
+        }
+        putOrders(fingerprint, orders);
+        return fingerprint;
+    }
+
+    private void putOrders(QueryFingerprint fingerprint, OrderSpecifier<?>[] orders) {
+        if (null != orders) {
+            fingerprint.putInt(orders.length);
+            for (OrderSpecifier<?> orderSpecifier : orders) {
+                fingerprint.putOrder(orderSpecifier);
+            }
+        }
+    }
 
     String getModule(RelationalPath relationalPath) {
         return relationalPath.getSchemaName() + CACHE_KEY_SEPARATOR + relationalPath.getTableName();
     }
 
+    /**
+     * 多表查询的结果同时依赖主表和关联表，任何一张表写入都要失效
+     *
+     * @param tables
+     * @return
+     */
+    List<String> getModules(List<AssociatedTable> tables) {
+        if (null == tables || tables.isEmpty()) {
+            return rootModules;
+        }
+        List<String> modules = new ArrayList<>(tables.size() + 1);
+        modules.add(rootModule);
+        for (AssociatedTable associatedTable : tables) {
+            modules.add(getModule(associatedTable.getEntityPath()));
+        }
+        return modules;
+    }
+
+    /**
+     * 读取缓存，未命中时由一个线程执行查询并回填，同一键上并发未命中的线程等待同一次查询的结果。
+     * 启用提前刷新时，临近到期的值照常返回，同时在后台重新查询，热点键不会因到期而集中穿透到数据库。
+     *
+     * @param key
+     * @param modules 值所属的表模块
+     * @param loader  查询数据库
+     * @return
+     */
+    <T> T loadCachedData(String key, List<String> modules, Supplier<T> loader) {
+        CachedValue cached = getCachedData(key, modules);
+        if (null != cached) {
+            if (refreshAheadSeconds > 0 && cached.remainingSeconds() <= refreshAheadSeconds) {
+                refreshCachedData(key, modules, loader);
+            }
+            return (T) cached.value;
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = LOADINGS.putIfAbsent(key, future);
+        if (null != loading) {
+            try {
+                Object value = loading.join();
+                // 等待者拿到的是查询线程的结果，复制一份，避免多个调用方共享同一个可变实体
+                return (T) (value instanceof Serializable ? SerializationUtils.clone((Serializable) value) : value);
+            } catch (CancellationException e) {
+                return loader.get();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            T value = loader.get();
+            if (null != value) {
+                putCachedData(key, value, modules);
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            LOADINGS.remove(key, future);
+        }
+    }
+
+    /**
+     * 在后台线程中重新查询并回填缓存，已有线程在查询该键时不重复提交
+     *
+     * @param key
+     * @param modules
+     * @param loader
+     */
+    private void refreshCachedData(String key, List<String> modules, Supplier<?> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (null != LOADINGS.putIfAbsent(key, future)) {
+            return;
+        }
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                try {
+                    // 后台线程没有调用方的事务，单独开启只读事务
+                    Object value = refreshTransactionTemplate.execute(status -> loader.get());
+                    if (null != value) {
+                        putCachedData(key, value, modules);
+                    }
+                    future.complete(value);
+                } catch (RuntimeException e) {
+                    logger.warn(MarkerFactory.getMarker(LogMarker.DATABASE), "Refresh cache {} failed", key, e);
+                    future.cancel(false);
+                } finally {
+                    LOADINGS.remove(key, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOADINGS.remove(key, future);
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * 先查近端缓存，未命中再查远端缓存，远端命中的值回填近端缓存
+     *
+     * @param key
+     * @param modules 值所属的表模块
+     * @return
+     */
+    CachedValue getCachedData(String key, List<String> modules) {
+        if (hasNearCache) {
+            for (String module : modules) {
+                syncNearCache(module);
+            }
+            CachedValue value = (CachedValue) NEAR_CACHE.get(key);
+            if (null != value) {
+                return value;
+            }
+        }
+        CachedValue value = toCachedValue(cacheService.get(key));
+        if (hasNearCache && null != value) {
+            NEAR_CACHE.put(key, value, value.remainingSeconds(), modules);
+        }
+        return value;
+    }
+
+    void putCachedData(String key, Object value, List<String> modules) {
+        CachedValue cachedValue = new CachedValue(value, System.currentTimeMillis() + expireSeconds * 1000L);
+        cacheService.set(key, cachedValue, expireSeconds);
+        for (String module : modules) {
+            putToClearDatas(module, key);
+        }
+        if (hasNearCache) {
+            NEAR_CACHE.put(key, cachedValue, expireSeconds, modules);
+        }
+    }
+
+    void putCachedDatas(Map<String, Object> values, List<String> modules) {
+        if (values.isEmpty()) {
+            return;
+        }
+        cacheService.setBulk(values, expireSeconds);
+        for (String module : modules) {
+            cacheService.addBulk(module, values.keySet());
+        }
+        if (hasNearCache) {
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                NEAR_CACHE.put(entry.getKey(), entry.getValue(), expireSeconds, modules);
+            }
+        }
+    }
+
+    /**
+     * 兼容升级前写入远端缓存的裸值，视为已到期，下次读取时触发刷新
+     *
+     * @param value
+     * @return
+     */
+    private CachedValue toCachedValue(Object value) {
+        if (null == value || value instanceof CachedValue) {
+            return (CachedValue) value;
+        }
+        return new CachedValue(value, System.currentTimeMillis());
+    }
+
+    String getIdKey(ID id) {
+        return idModule + CACHE_KEY_SEPARATOR + id;
+    }
+
+    /**
+     * 失效指定主键的实体缓存
+     *
+     * @param ids
+     */
+    void evictCachedEntities(Collection<ID> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            String key = getIdKey(id);
+            NEAR_CACHE.invalidate(key);
+            keys.add(key);
+        }
+        cacheService.deleteBulk(keys);
+        cacheService.removeBulk(idModule, keys);
+        // 只记录失效的键，其他节点对账时逐个失效，不清空整个模块
+        String logKey = idModule + EVICTION_LOG_KEY_SUFFIX + System.currentTimeMillis() / 1000;
+        cacheService.addBulk(logKey, keys);
+        cacheService.expire(logKey, EVICTION_LOG_SECONDS);
+    }
+
+    /**
+     * 影响的行无法确定时，清除主表的查询缓存和实体缓存
+     */
+    void clearRootCachedDatas() {
+        clearCachedDatas(rootModule);
+        clearCachedDatas(idModule);
+    }
+
+    /**
+     * 定期读取远端的模块代次，其他节点清除过该模块时本节点的近端缓存跟着清空；
+     * 实体缓存另外读取其他节点按行失效的键，只失效这些键。
+     * 不能按键是否还在远端模块集合中判断：键被清除后可能马上被其他节点重新查询写回
+     *
+     * @param module
+     */
+    private void syncNearCache(String module) {
+        if (NEAR_CACHE.needsSync(module, NEAR_CACHE_SYNC_MILLIS)) {
+            NEAR_CACHE.syncGeneration(module, cacheService.get(module + GENERATION_KEY_SUFFIX));
+            if (idModule.equals(module)) {
+                syncEvictionLog(module);
+            }
+        }
+    }
+
+    /**
+     * 失效上次对账以来其他节点记录的失效键，间隔超过记录的保留时间时清空整个模块
+     *
+     * @param module
+     */
+    private void syncEvictionLog(String module) {
+        long now = System.currentTimeMillis() / 1000;
+        Long last = EVICTION_LOG_SYNC_SECONDS.put(module, now);
+        if (null == last) {
+            return;
+        }
+        if (now - last > EVICTION_LOG_SECONDS - EVICTION_LOG_SKEW_SECONDS * 2) {
+            NEAR_CACHE.invalidateModule(module);
+            return;
+        }
+        for (long second = last - EVICTION_LOG_SKEW_SECONDS; second <= now + EVICTION_LOG_SKEW_SECONDS; second++) {
+            Set<Object> keys = cacheService.members(module + EVICTION_LOG_KEY_SUFFIX + second);
+            if (null != keys) {
+                for (Object key : keys) {
+                    NEAR_CACHE.invalidate((String) key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 模块下的值被清除后更新远端的模块代次，本节点下次对账时同样会清空该模块
+     *
+     * @param module
+     */
+    private void nextGeneration(String module) {
+        cacheService.set(module + GENERATION_KEY_SUFFIX, UUID.randomUUID().toString());
+    }
+
     void clearCachedDatas(String module) {
+        NEAR_CACHE.invalidateModule(module);
         Set<Object> members = cacheService.members(module);
-        for (Object value : members) {
-            cacheService.delete((String) value);
-            cacheService.remove(module, value);
+        if (null != members && !members.isEmpty()) {
+            List<String> keys = new ArrayList<>(members.size());
+            for (Object value : members) {
+                keys.add((String) value);
+            }
+            cacheService.deleteBulk(keys);
+            cacheService.removeBulk(module, members);
         }
+        // 远端删除后再更新代次，其他节点清空后不会再读到旧值
+        nextGeneration(module);
     }
 
     void putToClearDatas(String module, String key) {
         cacheService.add(module, key);
     }
+
+    /**
+     * 缓存值及其到期时间，提前刷新据此判断剩余时间
+     */
+    static final class CachedValue implements Serializable {
+        private static final long serialVersionUID = -3416578946123305219L;
+
+        final Object value;
+
+        final long expireAt;
+
+        CachedValue(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        int remainingSeconds() {
+            return (int) Math.max(0, (expireAt - System.currentTimeMillis()) / 1000);
+        }
+    }
 }
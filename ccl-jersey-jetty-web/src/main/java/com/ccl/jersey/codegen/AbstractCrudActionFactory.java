@@ -2,6 +2,8 @@ package com.ccl.jersey.codegen;
 
 import org.springframework.validation.annotation.Validated;
 
+import javax.ws.rs.core.StreamingOutput;
+
 import java.io.Serializable;
 import java.util.List;
 
@@ -112,7 +114,24 @@ public abstract class AbstractCrudActionFactory<Repository extends DataQueryAndB
     @Order(112)
     @Override
     public Page<Entity> findAll(PageRequest pageable, @Label("实例") Entity example, Sort sort) {
-        return repository.findAll(pageable.getPage(), pageable.getSize(), example, sort);
+        return repository.findAll(pageable.getPage(), pageable.getSize(), example, sort, !pageable.isNoTotal());
+    }
+
+    @Action
+    @Label("根据实例流式列表查询")
+    @Order(116)
+    @Override
+    public StreamingOutput streamByExample(@Label("实例") Entity example, Sort sort) {
+        return JsonStreamingOutput.list(action -> repository.forEach(example, sort, action));
+    }
+
+    @Action
+    @Label("流式分页查询")
+    @Order(117)
+    @Override
+    public StreamingOutput streamPage(PageRequest pageable, @Label("实例") Entity example, Sort sort) {
+        return JsonStreamingOutput.page(action -> repository.forEach(pageable.getPage(), pageable.getSize(),
+                example, sort, !pageable.isNoTotal(), action));
     }
 
     @Action
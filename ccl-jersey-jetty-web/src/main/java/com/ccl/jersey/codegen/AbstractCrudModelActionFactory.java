@@ -2,6 +2,8 @@ package com.ccl.jersey.codegen;
 
 import org.springframework.validation.annotation.Validated;
 
+import javax.ws.rs.core.StreamingOutput;
+
 import java.io.Serializable;
 import java.util.List;
 
@@ -111,7 +113,24 @@ public abstract class AbstractCrudModelActionFactory<Repository extends ModelQue
     @Order(112)
     @Override
     public Page<Model> findAll(PageRequest pageable, @Label("实例") Model example, @Label("排序") Sort sort) {
-        return repository.findAllByModel(pageable.getPage(), pageable.getSize(), example, sort);
+        return repository.findAllByModel(pageable.getPage(), pageable.getSize(), example, sort, !pageable.isNoTotal());
+    }
+
+    @Action
+    @Label("根据实例流式列表查询")
+    @Order(116)
+    @Override
+    public StreamingOutput streamByExample(@Label("实例") Model example, @Label("排序") Sort sort) {
+        return JsonStreamingOutput.list(action -> repository.forEachByModel(example, sort, action));
+    }
+
+    @Action
+    @Label("流式分页查询")
+    @Order(117)
+    @Override
+    public StreamingOutput streamPage(PageRequest pageable, @Label("实例") Model example, @Label("排序") Sort sort) {
+        return JsonStreamingOutput.page(action -> repository.forEachByModel(pageable.getPage(), pageable.getSize(),
+                example, sort, !pageable.isNoTotal(), action));
     }
 
     @Action
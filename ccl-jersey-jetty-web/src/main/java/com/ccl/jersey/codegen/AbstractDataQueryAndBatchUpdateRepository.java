@@ -7,6 +7,8 @@ import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.sql.RelationalPath;
 import org.apache.commons.lang3.reflect.FieldUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
 import javax.validation.constraints.NotNull;
@@ -15,6 +17,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Created by ccl on 2015/9/17.
@@ -90,34 +94,35 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Entity findById(ID id) {
-        return findOne(builder.get(ID).eq(id));
+        return findCachedById(id);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Entity> findByIds(Collection<ID> ids) {
-        if (null != ids) {
-            BooleanBuilder booleanBuilder = new BooleanBuilder();
-            for (ID id : ids) {
-                booleanBuilder.or(builder.get(ID).eq(id));
-            }
-            return findAll(booleanBuilder.getValue(), null);
+        if (null != ids && !ids.isEmpty()) {
+            return findCachedByIds(ids);
         }
 
         return Collections.emptyList();
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Entity findOne(Filter filter) {
         return findOne(filter, null);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Entity findOne(Entity example) {
         return findOne(example, null);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Entity findOne(@NotNull Filter filter, Sort sort) {
         Predicate predicate = null;
         if (null != filter) {
@@ -135,6 +140,7 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Entity findOne(@NotNull Entity example, Sort sort) {
         Predicate predicate = null;
         if (null != example) {
@@ -152,6 +158,7 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Entity> findAll(Filter filter, Sort sort) {
         Predicate predicate = null;
         if (null != filter) {
@@ -170,6 +177,7 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Entity> findAll(Entity example, Sort sort) {
         Predicate predicate = null;
         if (null != example) {
@@ -188,13 +196,12 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
     }
 
     @Override
-    public Page<Entity> findAll(int page, int size, Filter filter, Sort sort) {
-
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<Entity> streamAll(Filter filter, Sort sort) {
         Predicate predicate = null;
         if (null != filter) {
             predicate = convertFilter(filter);
         }
-        long count = count(predicate);
         OrderSpecifier<?>[] orders = null;
         // 处理排序
         if (null != sort) {
@@ -204,21 +211,81 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
             }
         }
 
-        List<Entity> list = findAll(predicate, page,
-                size, orders);
-        return new Page<>(list, page, size, sort, count);
+        return streamAll(predicate, orders);
+    }
+
+    @Override
+    public void forEach(Entity example, Sort sort, Consumer<? super Entity> action) {
+        Predicate predicate = null;
+        if (null != example) {
+            predicate = convertExample(example);
+        }
+        OrderSpecifier<?>[] orders = toOrders(sort);
+        Predicate condition = predicate;
+        forEachRow(() -> iterateAll(condition, orders), action);
+    }
+
+    @Override
+    public Page<Entity> forEach(int page, int size, Entity example, Sort sort, boolean withTotal,
+                                Consumer<? super Entity> action) {
+        Predicate predicate = null;
+        if (null != example) {
+            predicate = convertExample(example);
+        }
+        OrderSpecifier<?>[] orders = toOrders(sort);
+        Predicate condition = predicate;
+        return forEachPage(page, size, sort, withTotal, () -> count(condition),
+                () -> iterateAll(condition, page, size, orders), action);
+    }
+
+    private OrderSpecifier<?>[] toOrders(Sort sort) {
+        OrderSpecifier<?>[] orders = null;
+        // 处理排序
+        if (null != sort) {
+            orders = new OrderSpecifier<?>[sort.size()];
+            for (int i = 0; i < sort.size(); i++) {
+                orders[i] = toOrder(root, builder, sort.get(i));
+            }
+        }
+        return orders;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Entity> findAll(int page, int size, Filter filter, Sort sort) {
+        return findAll(page, size, filter, sort, true);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Entity> findAll(int page, int size, Filter filter, Sort sort, boolean withTotal) {
+
+        Predicate predicate = null;
+        if (null != filter) {
+            predicate = convertFilter(filter);
+        }
+        return findPage(page, size, predicate, sort, withTotal);
     }
 
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<Entity> findAll(int page, int size, Entity example, Sort sort) {
+        return findAll(page, size, example, sort, true);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Entity> findAll(int page, int size, Entity example, Sort sort, boolean withTotal) {
 
         Predicate predicate = null;
         if (null != example) {
             predicate = convertExample(example);
         }
-        long count = count(predicate);
+        return findPage(page, size, predicate, sort, withTotal);
+    }
 
+    private Page<Entity> findPage(int page, int size, Predicate predicate, Sort sort, boolean withTotal) {
         OrderSpecifier<?>[] orders = null;
         // 处理排序
         if (null != sort) {
@@ -227,13 +294,42 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
                 orders[i] = toOrder(root, builder, sort.get(i));
             }
         }
+        OrderSpecifier<?>[] pageOrders = orders;
+        return queryPage(page, size, sort, withTotal, () -> count(predicate),
+                () -> findAll(predicate, page, size, pageOrders));
+    }
 
-        List<Entity> list = findAll(predicate, page,
-                size, orders);
-        return new Page<>(list, page, size, sort, count);
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Entity> findAllAfter(String continuation, int size, Filter filter, Sort sort) {
+        OrderSpecifier<?>[] orders = new OrderSpecifier<?>[null == sort ? 0 : sort.size()];
+        // 处理排序
+        for (int i = 0; i < orders.length; i++) {
+            orders[i] = toOrder(root, builder, sort.get(i));
+        }
+        orders = KeysetCursor.withTieBreaker(orders, toOrder(root, builder, new Sort.Order(ID)).getTarget());
+
+        BooleanBuilder predicate = new BooleanBuilder();
+        if (null != filter) {
+            predicate.and(convertFilter(filter));
+        }
+        if (null != continuation) {
+            predicate.and(KeysetCursor.after(orders, KeysetCursor.decode(continuation, orders)));
+        }
+        // 多取一行判断是否还有下一页
+        Page<Entity> p = new Page<>(null, 1, size, sort, -1);
+        p.setKeyset(true);
+        List<Entity> list = findAll(predicate.getValue(), 1, p.getSize() + 1, orders);
+        if (list.size() > p.getSize()) {
+            list = list.subList(0, p.getSize());
+            p.setContinuation(KeysetCursor.encode(KeysetCursor.readKeys(orders, list.get(list.size() - 1))));
+        }
+        p.setContent(new ArrayList<>(list));
+        return p;
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long count(Filter filter) {
         // 处理查询条件
         Predicate predicate = null;
@@ -244,6 +340,7 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long count(Entity example) {
         // 处理查询条件
         Predicate predicate = null;
@@ -254,26 +351,18 @@ public abstract class AbstractDataQueryAndBatchUpdateRepository<Entity extends I
     }
 
     Predicate convertExample(Entity entity) {
-        RelationalPath<Entity> relationalPath = entityPathResolver
-                .createPath(entityClass);
-        PathBuilder<Entity> pathBuilder = entityPathResolver
-                .getPathBuilder(relationalPath);
         Specification<Entity> specification = DynamicSpecifications.byExample(
                 entity);
-        Predicate predicate = specification.toPredicate(relationalPath,
-                pathBuilder, entityPathResolver);
+        Predicate predicate = specification.toPredicate(root,
+                builder, entityPathResolver);
         return predicate;
     }
 
     Predicate convertFilter(Filter filter) {
-        RelationalPath<Entity> relationalPath = entityPathResolver
-                .createPath(entityClass);
-        PathBuilder<Entity> pathBuilder = entityPathResolver
-                .getPathBuilder(relationalPath);
         Specification<Entity> specification = DynamicSpecifications.bySearchFilter(
                 filter);
-        Predicate predicate = specification.toPredicate(relationalPath,
-                pathBuilder, entityPathResolver);
+        Predicate predicate = specification.toPredicate(root,
+                builder, entityPathResolver);
         return predicate;
     }
 
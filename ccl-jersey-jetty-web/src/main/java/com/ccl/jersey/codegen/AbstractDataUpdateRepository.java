@@ -1,10 +1,9 @@
 package com.ccl.jersey.codegen;
 
-import com.querydsl.core.BooleanBuilder;
-
 import javax.sql.DataSource;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 
 public abstract class AbstractDataUpdateRepository<Entity extends IdEntity<ID>, ID extends Serializable>
         extends AbstractCachedQueryDslRepository<Entity, ID> implements
@@ -40,17 +39,13 @@ public abstract class AbstractDataUpdateRepository<Entity extends IdEntity<ID>,
 
     @Override
     public void deleteById(ID id) {
-        deleteAll(builder.get(ID).eq(id));
+        deleteAllByIds(Collections.singletonList(id));
     }
 
     @Override
     public void deleteByIds(Collection<ID> ids) {
         if (null != ids && !ids.isEmpty()) {
-            BooleanBuilder booleanBuilder = new BooleanBuilder();
-            for (ID id : ids) {
-                booleanBuilder.or(builder.get(ID).eq(id));
-            }
-            deleteAll(booleanBuilder.getValue());
+            deleteAllByIds(ids);
         }
 
     }
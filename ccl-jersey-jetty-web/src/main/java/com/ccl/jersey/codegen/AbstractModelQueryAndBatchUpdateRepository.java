@@ -8,8 +8,11 @@ import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.core.types.dsl.SimpleExpression;
 import com.querydsl.sql.RelationalPath;
+import com.querydsl.sql.SQLQueryFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
 import javax.sql.DataSource;
@@ -18,6 +21,8 @@ import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Created by ccl on 2015/9/18.
@@ -25,6 +30,11 @@ import java.util.*;
 public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends IdEntity<ID>, ID extends Serializable, Model extends DataModel<Entity, ID>>
         extends AbstractModelUpdateRepository<Entity, ID, Model> implements ModelQueryAndBatchUpdateRepository<Model, Entity, ID> {
 
+    /**
+     * hasMany批量加载时每条IN查询的最大主键数，避免超出数据库的参数个数限制
+     */
+    private static final int HAS_MANY_BATCH_SIZE = 500;
+
     public AbstractModelQueryAndBatchUpdateRepository(DataSource dataSource) {
         super(dataSource);
     }
@@ -110,13 +120,14 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Model findModelById(ID id) {
         Assert.notNull(id, "view id is required.");
         Model model;
         if (modelBeanDesc.hasBelongsTo()) {
             List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
                     .getBelongsTos());
-            Tuple findOne = findOne(tables, Lists.newArrayList(builder.get(ID).eq(id)), null);
+            Tuple findOne = findOne(tables, Lists.newArrayList(idPath.eq(id)), null);
             model = convertWithBelongsToTuple(tables, findOne);
         } else {
             Entity entity = super.findById(id);
@@ -131,16 +142,19 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Model findOneByModel(Filter filter) {
         return findOneByModel(filter, null);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Model findOneByModel(Model example) {
         return findOneByModel(example, null);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Model findOneByModel(@NotNull Filter filter, Sort sort) {
         Model model;
         if (modelBeanDesc.hasBelongsTo()) {
@@ -173,6 +187,7 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Model findOneByModel(@NotNull Model example, Sort sort) {
         Model model;
         if (modelBeanDesc.hasBelongsTo()) {
@@ -206,6 +221,7 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Model> findAllByModel(Filter filter, Sort sort) {
         List<Model> answer = new ArrayList<>();
         if (modelBeanDesc.hasBelongsTo()) {
@@ -242,6 +258,7 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Model> findAllByModel(Model example, Sort sort) {
         List<Model> answer = new ArrayList<>();
         if (modelBeanDesc.hasBelongsTo()) {
@@ -278,14 +295,14 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
     }
 
     @Override
-    public Page<Model> findAllByModel(int page, int size, Filter filter, Sort sort) {
-        Page<Model> answer;
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<Model> streamAllByModel(Filter filter, Sort sort) {
         if (modelBeanDesc.hasBelongsTo()) {
             List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
                     .getBelongsTos());
             List<Predicate> predicates = null;
             if (null != filter) {
-                predicates = new ArrayList();
+                predicates = new ArrayList<>();
                 predicates.add(convertModelFilter(tables, filter));
             }
             OrderSpecifier[] orders = null;
@@ -294,41 +311,49 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
                 List<OrderSpecifier> orderList = convertModelSort(tables, sort);
                 orders = orderList.toArray(new OrderSpecifier[orderList.size()]);
             }
+            return streamAll(tables, predicates, orders)
+                    .map(tuple -> convertWithBelongsToTuple(tables, tuple));
+        }
+        return streamAll(filter, sort)
+                .map(entity -> BeanConvertUtils.convertEntityToModel(entity, modelClass))
+                .filter(Objects::nonNull);
+    }
 
-            long count = count(tables, null == predicates ? null
-                    : predicates.toArray(new Predicate[predicates.size()]));
-
-            List<Tuple> findAll = findAll(tables, predicates,
-                    page, size, orders);
-            List<Model> list = new ArrayList<>();
-            for (Tuple tuple : findAll) {
-                Model vo = convertWithBelongsToTuple(tables, tuple);
-                if (null != vo && modelBeanDesc.hasHasMany()) {
-                    for (AssociatedDesc associatedDesc : modelBeanDesc
-                            .getHasManys()) {
-                        handleHasManyQuery(vo, associatedDesc);
-                    }
-                }
-                list.add(vo);
+    @Override
+    public void forEachByModel(Model example, Sort sort, Consumer<? super Model> action) {
+        if (modelBeanDesc.hasBelongsTo()) {
+            List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
+                    .getBelongsTos());
+            List<Predicate> predicates = null;
+            if (null != example) {
+                predicates = new ArrayList<>();
+                predicates.add(convertModelFilter(tables, convertExampleToFilter(example, null)));
             }
-            answer = new Page(list, page, size, sort, count);
-        } else {
-            Page<Entity> entityPage = super.findAll(page, size, filter, sort);
-            answer = new Page(BeanConvertUtils.convertEntityToModel(entityPage.getContent(), modelClass), page, size, sort, entityPage.getTotalElements());
+            OrderSpecifier[] orders = null;
+            // 处理排序
+            if (null != sort) {
+                List<OrderSpecifier> orderList = convertModelSort(tables, sort);
+                orders = orderList.toArray(new OrderSpecifier[orderList.size()]);
+            }
+            List<Predicate> conditions = predicates;
+            OrderSpecifier[] streamOrders = orders;
+            forEachRow(() -> iterateAll(tables, conditions, streamOrders),
+                    tuple -> action.accept(convertWithBelongsToTuple(tables, tuple)));
+            return;
         }
-//        for (Model vo : answer) {
-//            if (null != vo && modelBeanDesc.hasHasMany()) {
-//                for (AssociatedDesc associatedDesc : modelBeanDesc.getHasManys()) {
-//                    handleHasManyQuery(vo, associatedDesc);
-//                }
-//            }
-//        }
-        return answer;
+        super.forEach(BeanConvertUtils.convertModelToEntity(example, entityClass), sort,
+                entity -> action.accept(BeanConvertUtils.convertEntityToModel(entity, modelClass)));
     }
 
     @Override
-    public Page<Model> findAllByModel(int page, int size, Model example, Sort sort) {
-        Page<Model> answer;
+    public Page<Model> forEachByModel(int page, int size, Model example, Sort sort, boolean withTotal,
+                                      Consumer<? super Model> action) {
+        if (modelBeanDesc.hasBelongsTo() && modelBeanDesc.hasHasMany()) {
+            // 一对多关联按整页批量查询子表，无法逐行处理
+            Page<Model> modelPage = findAllByModel(page, size, example, sort, withTotal);
+            modelPage.getContent().forEach(action);
+            return new Page(null, page, size, sort, modelPage.getTotalElements());
+        }
         if (modelBeanDesc.hasBelongsTo()) {
             List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
                     .getBelongsTos());
@@ -343,39 +368,149 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
                 List<OrderSpecifier> orderList = convertModelSort(tables, sort);
                 orders = orderList.toArray(new OrderSpecifier[orderList.size()]);
             }
+            List<Predicate> conditions = predicates;
+            Predicate[] predicateArray = null == predicates ? null
+                    : predicates.toArray(new Predicate[predicates.size()]);
+            OrderSpecifier[] pageOrders = orders;
+            Page<Tuple> tuplePage = forEachPage(page, size, sort, withTotal, () -> count(tables, predicateArray),
+                    () -> iterateAll(tables, conditions, page, size, pageOrders),
+                    tuple -> action.accept(convertWithBelongsToTuple(tables, tuple)));
+            return new Page(null, page, size, sort, tuplePage.getTotalElements());
+        }
+        Page<Entity> entityPage = super.forEach(page, size, BeanConvertUtils.convertModelToEntity(example, entityClass),
+                sort, withTotal, entity -> action.accept(BeanConvertUtils.convertEntityToModel(entity, modelClass)));
+        return new Page(null, page, size, sort, entityPage.getTotalElements());
+    }
 
-            long count = count(tables, null == predicates ? null
-                    : predicates.toArray(new Predicate[predicates.size()]));
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Model> findAllByModel(int page, int size, Filter filter, Sort sort) {
+        return findAllByModel(page, size, filter, sort, true);
+    }
 
-            List<Tuple> findAll = findAll(tables, predicates,
-                    page, size, orders);
-            List<Model> list = new ArrayList<>();
-            for (Tuple tuple : findAll) {
-                Model vo = convertWithBelongsToTuple(tables, tuple);
-                if (null != vo && modelBeanDesc.hasHasMany()) {
-                    for (AssociatedDesc associatedDesc : modelBeanDesc
-                            .getHasManys()) {
-                        handleHasManyQuery(vo, associatedDesc);
-                    }
-                }
-                list.add(vo);
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Model> findAllByModel(int page, int size, Filter filter, Sort sort, boolean withTotal) {
+        if (modelBeanDesc.hasBelongsTo()) {
+            List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
+                    .getBelongsTos());
+            List<Predicate> predicates = null;
+            if (null != filter) {
+                predicates = new ArrayList();
+                predicates.add(convertModelFilter(tables, filter));
             }
-            answer = new Page(list, page, size, sort, count);
-        } else {
-            Page<Entity> entityPage = super.findAll(page, size, BeanConvertUtils.convertModelToEntity(example, entityClass), sort);
-            answer = new Page(BeanConvertUtils.convertEntityToModel(entityPage.getContent(), modelClass), page, size, sort, entityPage.getTotalElements());
+            return findModelPage(page, size, tables, predicates, sort, withTotal);
         }
-//        for (Model vo : answer) {
-//            if (null != vo && modelBeanDesc.hasHasMany()) {
-//                for (AssociatedDesc associatedDesc : modelBeanDesc.getHasManys()) {
-//                    handleHasManyQuery(vo, associatedDesc);
-//                }
-//            }
-//        }
+        Page<Entity> entityPage = super.findAll(page, size, filter, sort, withTotal);
+        return new Page(BeanConvertUtils.convertEntityToModel(entityPage.getContent(), modelClass), page, size, sort, entityPage.getTotalElements());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Model> findAllByModel(int page, int size, Model example, Sort sort) {
+        return findAllByModel(page, size, example, sort, true);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Model> findAllByModel(int page, int size, Model example, Sort sort, boolean withTotal) {
+        if (modelBeanDesc.hasBelongsTo()) {
+            List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
+                    .getBelongsTos());
+            List<Predicate> predicates = null;
+            if (null != example) {
+                predicates = new ArrayList<>();
+                predicates.add(convertModelFilter(tables, convertExampleToFilter(example, null)));
+            }
+            return findModelPage(page, size, tables, predicates, sort, withTotal);
+        }
+        Page<Entity> entityPage = super.findAll(page, size, BeanConvertUtils.convertModelToEntity(example, entityClass), sort, withTotal);
+        return new Page(BeanConvertUtils.convertEntityToModel(entityPage.getContent(), modelClass), page, size, sort, entityPage.getTotalElements());
+    }
+
+    /**
+     * 关联查询的分页，计数与本页查询的执行方式见 {@link #queryPage}
+     */
+    private Page<Model> findModelPage(int page, int size, List<AssociatedTable> tables, List<Predicate> predicates,
+                                      Sort sort, boolean withTotal) {
+        OrderSpecifier[] orders = null;
+        // 处理排序
+        if (null != sort) {
+            List<OrderSpecifier> orderList = convertModelSort(tables, sort);
+            orders = orderList.toArray(new OrderSpecifier[orderList.size()]);
+        }
+        Predicate[] predicateArray = null == predicates ? null
+                : predicates.toArray(new Predicate[predicates.size()]);
+        OrderSpecifier[] pageOrders = orders;
+        Page<Tuple> tuplePage = queryPage(page, size, sort, withTotal, () -> count(tables, predicateArray),
+                () -> findAll(tables, predicates, page, size, pageOrders));
+        List<Model> list = new ArrayList<>();
+        for (Tuple tuple : tuplePage) {
+            Model vo = convertWithBelongsToTuple(tables, tuple);
+            list.add(vo);
+        }
+        if (modelBeanDesc.hasHasMany()) {
+            for (AssociatedDesc associatedDesc : modelBeanDesc
+                    .getHasManys()) {
+                handleHasManyQuery(list, associatedDesc);
+            }
+        }
+        return new Page(list, page, size, sort, tuplePage.getTotalElements());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Model> findAllByModelAfter(String continuation, int size, Filter filter, Sort sort) {
+        if (!modelBeanDesc.hasBelongsTo()) {
+            Page<Entity> entityPage = super.findAllAfter(continuation, size, filter, sort);
+            Page<Model> answer = new Page(BeanConvertUtils.convertEntityToModel(entityPage.getContent(), modelClass),
+                    1, size, sort, -1);
+            answer.setKeyset(true);
+            answer.setContinuation(entityPage.getContinuation());
+            return answer;
+        }
+        List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
+                .getBelongsTos());
+        OrderSpecifier[] orders = new OrderSpecifier[0];
+        // 处理排序
+        if (null != sort) {
+            List<OrderSpecifier> orderList = convertModelSort(tables, sort);
+            orders = orderList.toArray(new OrderSpecifier[orderList.size()]);
+        }
+        orders = KeysetCursor.withTieBreaker(orders, toOrder(root, builder, new Sort.Order(ID)).getTarget());
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (null != filter) {
+            predicates.add(convertModelFilter(tables, filter));
+        }
+        if (null != continuation) {
+            predicates.add(KeysetCursor.after(orders, KeysetCursor.decode(continuation, orders)));
+        }
+        // 多取一行判断是否还有下一页
+        Page<Model> answer = new Page<>(null, 1, size, sort, -1);
+        answer.setKeyset(true);
+        List<Tuple> findAll = findAll(tables, predicates, 1, answer.getSize() + 1, orders);
+        if (findAll.size() > answer.getSize()) {
+            findAll = findAll.subList(0, answer.getSize());
+            answer.setContinuation(KeysetCursor.encode(KeysetCursor.readKeys(orders, findAll.get(findAll.size() - 1))));
+        }
+        List<Model> list = new ArrayList<>();
+        for (Tuple tuple : findAll) {
+            Model vo = convertWithBelongsToTuple(tables, tuple);
+            list.add(vo);
+        }
+        if (modelBeanDesc.hasHasMany()) {
+            for (AssociatedDesc associatedDesc : modelBeanDesc
+                    .getHasManys()) {
+                handleHasManyQuery(list, associatedDesc);
+            }
+        }
+        answer.setContent(list);
         return answer;
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long countByModel(Filter filter) {
         if (modelBeanDesc.hasBelongsTo()) {
             List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
@@ -393,6 +528,7 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long countByModel(Model example) {
         if (modelBeanDesc.hasBelongsTo()) {
             List<AssociatedTable> tables = getAssociatedTableFromDesc(modelBeanDesc
@@ -409,8 +545,31 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
         return super.count(BeanConvertUtils.convertModelToEntity(example, entityClass));
     }
 
+    /**
+     * 批量加载hasMany关联：父主键按批次拼成IN查询，每批只查询一次关联表，再在内存中按关联属性分组写回
+     *
+     * @param models
+     * @param associatedDesc
+     */
     @SuppressWarnings({"unchecked", "rawtypes"})
-    private void handleHasManyQuery(Model model, AssociatedDesc associatedDesc) {
+    private void handleHasManyQuery(List<Model> models, AssociatedDesc associatedDesc) {
+        // 父主键与关联属性的类型可能不同(如Integer与Long)，统一按字符串分组
+        Map<String, List<Model>> parents = new LinkedHashMap<>();
+        List<ID> ids = new ArrayList<>();
+        for (Model model : models) {
+            if (null != model && null != model.getId()) {
+                List<Model> sameIdModels = parents.get(String.valueOf(model.getId()));
+                if (null == sameIdModels) {
+                    sameIdModels = new ArrayList<>(1);
+                    parents.put(String.valueOf(model.getId()), sameIdModels);
+                    ids.add(model.getId());
+                }
+                sameIdModels.add(model);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
         try {
             RelationalPath<?> relationalPath = entityPathResolver
                     .createPath(BeanConvertUtils.getModelBeanDesc(
@@ -419,11 +578,36 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
             SimpleExpression property = (SimpleExpression) entityPathResolver
                     .getProperty(relationalPath,
                             associatedDesc.getAssociatedProperty());
-            List findAll = findAll(property.eq(model.getId()));
-            List voList = BeanConvertUtils.convertEntityToModel(findAll,
-                    associatedDesc.getAssociatedClass());
-            FieldUtils.writeDeclaredField(model, associatedDesc.getProperty(),
-                    voList, true);
+            Map<String, List> children = new HashMap<>();
+            for (int i = 0; i < ids.size(); i += HAS_MANY_BATCH_SIZE) {
+                List<ID> batchIds = ids.subList(i, Math.min(ids.size(), i + HAS_MANY_BATCH_SIZE));
+                List findAll = read(new Query() {
+                    @Override
+                    public List executeQuery(SQLQueryFactory sqlQuery) {
+                        return sqlQuery.selectFrom(relationalPath)
+                                .where(property.in(batchIds)).fetch();
+                    }
+                });
+                for (Object child : findAll) {
+                    String parentId = String.valueOf(FieldUtils.readField(child,
+                            associatedDesc.getAssociatedProperty(), true));
+                    List sameParentChildren = children.get(parentId);
+                    if (null == sameParentChildren) {
+                        sameParentChildren = new ArrayList();
+                        children.put(parentId, sameParentChildren);
+                    }
+                    sameParentChildren.add(child);
+                }
+            }
+            for (Map.Entry<String, List<Model>> entry : parents.entrySet()) {
+                List findAll = children.get(entry.getKey());
+                for (Model model : entry.getValue()) {
+                    List voList = null == findAll ? new ArrayList() : BeanConvertUtils.convertEntityToModel(findAll,
+                            associatedDesc.getAssociatedClass());
+                    FieldUtils.writeDeclaredField(model, associatedDesc.getProperty(),
+                            voList, true);
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.QueryHasMany.Error"));
@@ -590,14 +774,10 @@ public abstract class AbstractModelQueryAndBatchUpdateRepository<Entity extends
                 }
             }
         }
-        RelationalPath<Entity> relationalPath = entityPathResolver
-                .createPath(entityClass);
-        PathBuilder<Entity> pathBuilder = entityPathResolver
-                .getPathBuilder(relationalPath);
         Specification<Entity> specification = DynamicSpecifications.bySearchTerm(
                 term);
-        Predicate predicate = specification.toPredicate(relationalPath,
-                pathBuilder, entityPathResolver);
+        Predicate predicate = specification.toPredicate(root,
+                builder, entityPathResolver);
         return predicate;
     }
 
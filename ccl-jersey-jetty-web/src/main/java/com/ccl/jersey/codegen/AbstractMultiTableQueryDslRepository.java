@@ -1,5 +1,6 @@
 package com.ccl.jersey.codegen;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.Predicate;
@@ -9,11 +10,14 @@ import com.querydsl.sql.SQLQueryFactory;
 import com.querydsl.sql.dml.SQLDeleteClause;
 import com.querydsl.sql.dml.SQLUpdateClause;
 import org.joda.time.DateTime;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEntity<ID>, ID extends Serializable>
         extends AbstractQueryDslRepository<Entity, ID> implements
@@ -29,8 +33,9 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Tuple findOne(List<AssociatedTable> tables, List<Predicate> predicates, OrderSpecifier<?>... orders) {
-        return query(new Query() {
+        return read(new Query() {
             @Override
             public Tuple executeQuery(SQLQueryFactory sqlQuery) {
                 List<RelationalPath> resultPath = new ArrayList<>();
@@ -40,7 +45,7 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
                         resultPath.add(associatedTable.getEntityPath());
                     }
                 }
-                SQLQuery<Tuple> query = sqlQueryFactory.select(resultPath
+                SQLQuery<Tuple> query = sqlQuery.select(resultPath
                         .toArray(new RelationalPath[resultPath.size()])).from(root);
                 if (null != tables && !tables.isEmpty()) {
                     for (AssociatedTable associatedTable : tables) {
@@ -62,11 +67,12 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long count(List<AssociatedTable> tables, Predicate... predicates) {
-        return query(new Query() {
+        return read(new Query() {
             @Override
             public Long executeQuery(SQLQueryFactory sqlQuery) {
-                SQLQuery query = sqlQueryFactory.select(builder.get(ID).count()).from(root);
+                SQLQuery query = sqlQuery.select(builder.get(ID).count()).from(root);
                 if (null != tables && !tables.isEmpty()) {
                     for (AssociatedTable associatedTable : tables) {
                         query.leftJoin(associatedTable.getEntityPath()).on(
@@ -82,9 +88,10 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Tuple> findAll(List<AssociatedTable> tables,
                                List<Predicate> predicates, OrderSpecifier<?>... orders) {
-        return query(new Query() {
+        return read(new Query() {
             @Override
             public List<Tuple> executeQuery(SQLQueryFactory sqlQuery) {
                 List<RelationalPath<?>> resultPath = new ArrayList<>();
@@ -94,7 +101,7 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
                         resultPath.add(associatedTable.getEntityPath());
                     }
                 }
-                SQLQuery<Tuple> query = sqlQueryFactory.select(resultPath
+                SQLQuery<Tuple> query = sqlQuery.select(resultPath
                         .toArray(new RelationalPath<?>[resultPath.size()])).from(root);
                 if (null != tables && !tables.isEmpty()) {
                     for (AssociatedTable associatedTable : tables) {
@@ -116,11 +123,12 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Tuple> findAll(List<AssociatedTable> tables,
                                List<Predicate> predicates, int page, int size,
                                OrderSpecifier<?>... orders) {
         final Page p = new Page(page, size);
-        return query(new Query() {
+        return read(new Query() {
             @Override
             public List<Tuple> executeQuery(SQLQueryFactory sqlQuery) {
                 List<RelationalPath<?>> resultPath = new ArrayList<>();
@@ -130,7 +138,7 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
                         resultPath.add(associatedTable.getEntityPath());
                     }
                 }
-                SQLQuery<Tuple> query = sqlQueryFactory.select(resultPath.toArray(new RelationalPath<?>[resultPath
+                SQLQuery<Tuple> query = sqlQuery.select(resultPath.toArray(new RelationalPath<?>[resultPath
                         .size()])).from(root);
                 if (null != tables && !tables.isEmpty()) {
                     for (AssociatedTable associatedTable : tables) {
@@ -154,6 +162,87 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
         });
     }
 
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public CloseableIterator<Tuple> iterateAll(List<AssociatedTable> tables,
+                                               List<Predicate> predicates, OrderSpecifier<?>... orders) {
+        return query(new Query() {
+            @Override
+            public CloseableIterator<Tuple> executeQuery(SQLQueryFactory sqlQuery) {
+                List<RelationalPath<?>> resultPath = new ArrayList<>();
+                resultPath.add(root);
+                if (null != tables && !tables.isEmpty()) {
+                    for (AssociatedTable associatedTable : tables) {
+                        resultPath.add(associatedTable.getEntityPath());
+                    }
+                }
+                SQLQuery<Tuple> query = sqlQueryFactory.select(resultPath
+                        .toArray(new RelationalPath<?>[resultPath.size()])).from(root);
+                if (null != tables && !tables.isEmpty()) {
+                    for (AssociatedTable associatedTable : tables) {
+                        query.leftJoin(associatedTable.getEntityPath()).on(
+                                associatedTable.getOn());
+                    }
+                }
+                if (null != predicates) {
+                    query.where(predicates.toArray(new Predicate[predicates
+                            .size()]));
+                }
+                if (null != orders && orders.length > 0) {
+                    query.orderBy(orders);
+                }
+                query.setStatementOptions(getStreamStatementOptions());
+                return query.iterate();
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public CloseableIterator<Tuple> iterateAll(List<AssociatedTable> tables,
+                                               List<Predicate> predicates, int page, int size,
+                                               OrderSpecifier<?>... orders) {
+        final Page p = new Page(page, size);
+        return query(new Query() {
+            @Override
+            public CloseableIterator<Tuple> executeQuery(SQLQueryFactory sqlQuery) {
+                List<RelationalPath<?>> resultPath = new ArrayList<>();
+                resultPath.add(root);
+                if (null != tables && !tables.isEmpty()) {
+                    for (AssociatedTable associatedTable : tables) {
+                        resultPath.add(associatedTable.getEntityPath());
+                    }
+                }
+                SQLQuery<Tuple> query = sqlQueryFactory.select(resultPath
+                        .toArray(new RelationalPath<?>[resultPath.size()])).from(root);
+                if (null != tables && !tables.isEmpty()) {
+                    for (AssociatedTable associatedTable : tables) {
+                        query.leftJoin(associatedTable.getEntityPath()).on(
+                                associatedTable.getOn());
+                    }
+                }
+                if (null != predicates) {
+                    query.where(predicates.toArray(new Predicate[predicates
+                            .size()]));
+                }
+                if (null != orders && orders.length > 0) {
+                    query.orderBy(orders);
+                }
+                query.offset((p.getPage() - 1) * p.getSize())
+                        .limit(p.getSize());
+                query.setStatementOptions(getStreamStatementOptions());
+                return query.iterate();
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<Tuple> streamAll(List<AssociatedTable> tables,
+                                   List<Predicate> predicates, OrderSpecifier<?>... orders) {
+        return toStream(iterateAll(tables, predicates, orders));
+    }
+
     @Override
     public long updateAll(Entity entity, List<AssociatedTable> tables,
                           Predicate... predicates) {
@@ -166,7 +255,7 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
                 }
                 SQLUpdateClause update = sqlQueryFactory.update(root).populate(
                         entity);
-                SQLQuery query = sqlQueryFactory.select(builder.get(ID)).from(root);
+                SQLQuery query = sqlQueryFactory.select(idPath).from(root);
                 if (null != tables && !tables.isEmpty()) {
                     for (AssociatedTable associatedTable : tables) {
                         query.leftJoin(associatedTable.getEntityPath()).on(
@@ -176,8 +265,8 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
                 if (null != predicates && 0 < predicates.length) {
                     query.where(predicates);
                 }
-                update.where(builder.get(ID).in(query.fetch()));
-                return update.execute();
+                update.where(idPath.in(query.fetch()));
+                return SqlMetrics.recordRows(update.execute());
             }
         });
     }
@@ -188,7 +277,7 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
             @Override
             public Long executeQuery(SQLQueryFactory sqlQuery) {
                 SQLDeleteClause delete = sqlQueryFactory.delete(root);
-                SQLQuery query = sqlQueryFactory.select(builder.get(ID)).from(root);
+                SQLQuery query = sqlQueryFactory.select(idPath).from(root);
                 if (null != tables && !tables.isEmpty()) {
                     for (AssociatedTable associatedTable : tables) {
                         query.leftJoin(associatedTable.getEntityPath()).on(
@@ -198,9 +287,9 @@ public abstract class AbstractMultiTableQueryDslRepository<Entity extends IdEnti
                 if (null != predicates && 0 < predicates.length) {
                     query.where(predicates);
                 }
-                return delete
-                        .where(builder.get(ID).in(query.fetch()))
-                        .execute();
+                return SqlMetrics.recordRows(delete
+                        .where(idPath.in(query.fetch()))
+                        .execute());
             }
         });
     }
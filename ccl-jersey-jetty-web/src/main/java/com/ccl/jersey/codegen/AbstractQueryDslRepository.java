@@ -1,29 +1,65 @@
 package com.ccl.jersey.codegen;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Path;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.core.types.dsl.SimpleExpression;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.MySQLTemplates;
 import com.querydsl.sql.RelationalPath;
 import com.querydsl.sql.SQLQuery;
 import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.SQLTemplates;
+import com.querydsl.sql.StatementOptions;
 import com.querydsl.sql.dml.DefaultMapper;
 import com.querydsl.sql.dml.SQLDeleteClause;
 import com.querydsl.sql.dml.SQLInsertClause;
 import com.querydsl.sql.dml.SQLUpdateClause;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.reflect.FieldUtils;
 import org.joda.time.DateTime;
 import org.slf4j.MarkerFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Transactional(rollbackFor = RuntimeException.class)
 public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID extends Serializable>
@@ -34,16 +70,74 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
     protected final RelationalPath<Entity> root;
     protected final PathBuilder<Entity> builder;
     protected final SQLQueryFactory sqlQueryFactory;
+    protected final QueryDslConfig queryDslConfig;
+
+    /**
+     * 乐观锁版本号属性
+     */
+    private static final String VERSION = "version";
+
+    /**
+     * 创建时间属性，插入或更新时不覆盖
+     */
+    private static final String CREATE_TIME = "createTime";
+
+    private final SimpleExpression<Long> versionPath;
+
+    /**
+     * 主键属性，优先使用查询类中带列元数据的字段，绑定参数时才能用到按列注册的类型；两种实现都同时是 {@link Path}
+     */
+    protected final SimpleExpression<ID> idPath;
+
+    /**
+     * 游标查询每次从数据库读取的行数
+     */
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * 批量校验唯一键时每条查询包含的键数
+     */
+    private static final int UNIQUE_BATCH_SIZE = 500;
+
+    /**
+     * 多行VALUES每条语句最多绑定的参数个数，PostgreSQL的上限为32767
+     */
+    private static final int MAX_BULK_PARAMETERS = 30000;
+
+    /**
+     * 大批量写入时每批使用的独立事务
+     */
+    private final TransactionTemplate bulkTransactionTemplate;
+
+    /**
+     * 事务外的查询在主库上使用的只读事务
+     */
+    private final TransactionTemplate readTransactionTemplate;
 
     public AbstractQueryDslRepository(
             DataSource dataSource) {
         this(new QueryDslConfig(dataSource));
     }
 
+    @SuppressWarnings("unchecked")
     public AbstractQueryDslRepository(QueryDslConfig queryDslConfig) {
         this.root = entityPathResolver.createPath(entityClass);
         this.builder = entityPathResolver.getPathBuilder(root);
+        Path<Long> version = entityPathResolver.getProperty(root, VERSION);
+        this.versionPath = version instanceof SimpleExpression ? (SimpleExpression<Long>) version
+                : builder.getNumber(VERSION, Long.class);
+        Path<ID> id = entityPathResolver.getProperty(root, ID);
+        this.idPath = id instanceof SimpleExpression ? (SimpleExpression<ID>) id
+                : builder.getSimple(ID, primaryKeyClass);
         sqlQueryFactory = queryDslConfig.getSqlQueryFactory();
+        this.queryDslConfig = queryDslConfig;
+        registerBinaryObjectId(queryDslConfig.getConfiguration());
+        this.bulkTransactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(queryDslConfig.getDataSource()));
+        this.bulkTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(queryDslConfig.getDataSource()));
+        this.readTransactionTemplate.setReadOnly(true);
     }
 
     @Override
@@ -78,6 +172,24 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
         }
     }
 
+    /**
+     * 字符串主键存储在BINARY(12)列时，为该列注册 {@link ObjectIdBinaryType}
+     *
+     * @param configuration
+     */
+    private void registerBinaryObjectId(Configuration configuration) {
+        Path<?> id = (Path<?>) idPath;
+        if (!String.class.equals(primaryKeyClass) || id.getMetadata().getParent() != root) {
+            return;
+        }
+        ColumnMetadata column = root.getMetadata(id);
+        if (null != column && column.hasJdbcType()
+                && (Types.BINARY == column.getJdbcType() || Types.VARBINARY == column.getJdbcType())) {
+            configuration.register(root.getTableName(), column.getName(),
+                    new ObjectIdBinaryType(configuration.getTemplates()));
+        }
+    }
+
     private void generatorStringPrimaryKey(Entity entity) {
         if (String.class.equals(primaryKeyClass)) {
             String id = (String) entity.getId();
@@ -93,15 +205,15 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
             query(new QueryDslRepository.Query() {
                 @Override
                 public Object executeQuery(SQLQueryFactory sqlQuery) {
+                    uniqueValidator(entities);
                     SQLInsertClause insertClause = sqlQueryFactory.insert(root);
                     for (Entity entity : entities) {
-                        uniqueValidator(entity);
                         generatorStringPrimaryKey(entity);
                         markCreateTimestamp(entity);
                         entity.setDefaultValue();
                         insertClause.populate(entity).addBatch();
                     }
-                    insertClause.execute();
+                    SqlMetrics.recordRows(insertClause.execute());
                     return null;
                 }
             });
@@ -109,11 +221,430 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
         }
     }
 
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BulkWriteResult<ID> createInBulk(Collection<Entity> entities, BulkWriteOptions options) {
+        boolean returnKeys = null == options || options.isReturnKeys();
+        // 各批次在独立事务中并行写入，批次之间的重复只能在切分前整批比较
+        if (null != entities) {
+            uniqueBatchValidator(entities);
+        }
+        return writeInBulk(entities, options, chunk -> insertChunk(chunk, returnKeys));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BulkWriteResult<ID> updateInBulk(Collection<Entity> entities, boolean withNullBindings,
+                                            BulkWriteOptions options) {
+        return writeInBulk(entities, options, chunk -> {
+            if (chunk.isEmpty()) {
+                return 0L;
+            }
+            long updated = updateRows(chunk, withNullBindings);
+            // 驱动不返回行数时只能按整批计
+            return updated < 0 ? chunk.size() : updated;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkWriteResult<ID> writeInBulk(Collection<Entity> entities, BulkWriteOptions options,
+                                            Function<List<Entity>, Long> writer) {
+        BulkWriteOptions bulkOptions = null == options ? BulkWriteOptions.options() : options;
+        List<Entity> list = null == entities ? Collections.<Entity>emptyList() : new ArrayList<>(entities);
+        int batchSize = bulkOptions.getBatchSize();
+        int chunkCount = (list.size() + batchSize - 1) / batchSize;
+        List<ID> keys = new ArrayList<>(Collections.nCopies(list.size(), (ID) null));
+        BulkWriteResult.Chunk[] chunks = new BulkWriteResult.Chunk[chunkCount];
+        AtomicBoolean failed = new AtomicBoolean();
+
+        AtomicInteger nextChunk = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int index = nextChunk.getAndIncrement(); index < chunkCount; index = nextChunk.getAndIncrement()) {
+                if (bulkOptions.isStopOnFailure() && failed.get()) {
+                    return;
+                }
+                int offset = index * batchSize;
+                List<Entity> chunk = list.subList(offset, Math.min(offset + batchSize, list.size()));
+                chunks[index] = writeChunk(index, offset, chunk, writer, keys, failed, bulkOptions.getListener());
+            }
+        };
+        // 并行的批次由共用的执行器执行，已在执行器线程上时在当前线程依次执行，避免占满执行线程后互相等待
+        AsyncExecutor asyncExecutor = queryDslConfig.getAsyncExecutor();
+        int parallelism = Math.min(bulkOptions.getParallelism(), chunkCount);
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        if (parallelism > 1 && !asyncExecutor.inExecutor()) {
+            for (int i = 1; i < parallelism; i++) {
+                futures.add(asyncExecutor.supply(() -> {
+                    worker.run();
+                    return null;
+                }));
+            }
+        }
+        worker.run();
+        for (CompletableFuture<Object> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                // 排队已满时剩余的批次已由当前线程写完
+                if (!(e.getCause() instanceof RejectedExecutionException)) {
+                    throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.Query.Error", e.getMessage()), e);
+                }
+            }
+        }
+
+        List<BulkWriteResult.Chunk> results = new ArrayList<>(chunkCount);
+        for (BulkWriteResult.Chunk chunk : chunks) {
+            if (null != chunk) {
+                results.add(chunk);
+            }
+        }
+        return new BulkWriteResult<>(list.size(), keys, results);
+    }
+
+    private BulkWriteResult.Chunk writeChunk(int index, int offset, List<Entity> chunk,
+                                             Function<List<Entity>, Long> writer, List<ID> keys,
+                                             AtomicBoolean failed, BulkWriteListener listener) {
+        long written = 0;
+        String error = null;
+        try {
+            written = bulkTransactionTemplate.execute(status -> writer.apply(chunk));
+            for (int i = 0; i < chunk.size(); i++) {
+                keys.set(offset + i, chunk.get(i).getId());
+            }
+        } catch (RuntimeException e) {
+            failed.set(true);
+            error = e.getMessage();
+            logger.error(MarkerFactory.getMarker(LogMarker.DATABASE), Messages.getMessage("Jupiter.Persistence.BulkWrite.Error",
+                    entityClass.getSimpleName(), index, offset), e);
+        }
+        BulkWriteResult.Chunk result = new BulkWriteResult.Chunk(index, offset, chunk.size(), written, error);
+        if (null != listener) {
+            listener.onChunk(result);
+        }
+        return result;
+    }
+
+    /**
+     * 插入一批实体
+     *
+     * @param chunk
+     * @param returnKeys
+     * @return 插入的行数
+     */
+    private long insertChunk(List<Entity> chunk, boolean returnKeys) {
+        uniqueValidator(chunk);
+        return writeRows(chunk, returnKeys, false);
+    }
+
+    @Override
+    public void upsert(Entity entity) {
+        upsert(Collections.singletonList(entity));
+    }
+
+    @Override
+    public void upsert(Collection<Entity> entities) {
+        if (null != entities && !entities.isEmpty()) {
+            List<Entity> list = new ArrayList<>(entities);
+            uniqueValidator(list);
+            writeRows(list, true, true);
+        }
+    }
+
+    /**
+     * 写入实体，列相同的行合并为一条语句
+     * <p>
+     * 插入或更新时按数据库类型选择原生语法：MySQL为ON DUPLICATE KEY UPDATE，PostgreSQL为ON CONFLICT，
+     * Oracle为MERGE，其他数据库逐行先按主键更新、未更新到再插入。主键冲突时只更新调用方设置的非空字段，
+     * 默认值只用于插入，创建时间不更新，版本号在库中加一。同一条语句中不会出现重复的主键。
+     *
+     * @param chunk
+     * @param returnKeys 是否取回数据库生成的主键
+     * @param upsert     主键已存在时是否更新
+     * @return 写入的行数
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private long writeRows(List<Entity> chunk, boolean returnKeys, boolean upsert) {
+        // populate只绑定非空字段，各行的列可能不同，按插入列和冲突时的更新列分组后才能拼成多行VALUES
+        List<Map<Path<?>, Object>> rows = new ArrayList<>(chunk.size());
+        Map<List<List<Path<?>>>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Entity entity = chunk.get(i);
+            generatorStringPrimaryKey(entity);
+            if (upsert) {
+                // 更新时间在取更新列之前设置，已存在的行冲突更新时一并更新
+                markUpdateTimestamp(entity);
+            }
+            List<Path<?>> updateColumns = upsert
+                    ? getUpsertColumns(DefaultMapper.DEFAULT.createMap(root, entity).keySet())
+                    : Collections.<Path<?>>emptyList();
+            markCreateTimestamp(entity);
+            entity.setDefaultValue();
+            Map<Path<?>, Object> values = DefaultMapper.DEFAULT.createMap(root, entity);
+            rows.add(values);
+            groups.computeIfAbsent(Arrays.asList(new ArrayList<>(values.keySet()), updateColumns),
+                    k -> new ArrayList<>()).add(i);
+        }
+        String databaseType = queryDslConfig.getDatabaseType();
+        boolean multiRow = "MySQL".equals(databaseType) || "PostgreSql".equals(databaseType);
+        return query(new Query() {
+            @Override
+            public Long executeQuery(SQLQueryFactory sqlQuery) {
+                long written = 0;
+                for (Map.Entry<List<List<Path<?>>>, List<Integer>> group : groups.entrySet()) {
+                    List<Path<?>> columns = group.getKey().get(0);
+                    List<Path<?>> updateColumns = group.getKey().get(1);
+                    List<Integer> indexes = group.getValue();
+                    boolean hasId = null != chunk.get(indexes.get(0)).getId();
+                    if (upsert && hasId && !multiRow) {
+                        written += "Oracle".equals(databaseType) ? oracleMerge(columns, updateColumns, indexes, rows)
+                                : mergeRows(chunk, updateColumns, indexes, rows);
+                        continue;
+                    }
+                    String upsertFlag = upsert && hasId ? getUpsertFlag(updateColumns, databaseType) : null;
+                    int rowsPerStatement = multiRow ? Math.max(1, MAX_BULK_PARAMETERS / Math.max(1, columns.size()))
+                            : indexes.size();
+                    boolean fetchKeys = returnKeys && !hasId;
+                    for (List<Integer> part : splitStatements(chunk, indexes, rowsPerStatement, null != upsertFlag)) {
+                        SQLInsertClause insertClause = sqlQueryFactory.insert(root);
+                        insertClause.setBatchToBulk(multiRow);
+                        if (null != upsertFlag) {
+                            insertClause.addFlag(QueryFlag.Position.END, upsertFlag);
+                        }
+                        for (Integer index : part) {
+                            for (Map.Entry<Path<?>, Object> value : rows.get(index).entrySet()) {
+                                insertClause.set((Path) value.getKey(), value.getValue());
+                            }
+                            insertClause.addBatch();
+                        }
+                        if (fetchKeys) {
+                            List<ID> keys = insertClause.executeWithKeys(primaryKeyClass);
+                            SqlMetrics.recordRows(keys.size());
+                            if (keys.size() != part.size()) {
+                                // 无法对应主键到实体，整批回滚
+                                throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.GeneratedKeys.Error",
+                                        entityClass.getSimpleName(), part.size(), keys.size()));
+                            }
+                            for (int i = 0; i < part.size(); i++) {
+                                chunk.get(part.get(i)).setId(keys.get(i));
+                            }
+                            written += part.size();
+                        } else {
+                            written += SqlMetrics.recordRows(insertClause.execute());
+                        }
+                    }
+                }
+                return written;
+            }
+        });
+    }
+
+    /**
+     * 把一组行切分成多条语句，每条不超过 rowsPerStatement 行；
+     * uniqueIds 为true时主键重复的行放到下一条语句，PostgreSQL的ON CONFLICT不允许一条语句更新同一行两次
+     *
+     * @param chunk
+     * @param indexes
+     * @param rowsPerStatement
+     * @param uniqueIds
+     * @return
+     */
+    private List<List<Integer>> splitStatements(List<Entity> chunk, List<Integer> indexes, int rowsPerStatement,
+                                                boolean uniqueIds) {
+        List<List<Integer>> parts = new ArrayList<>();
+        List<Integer> part = new ArrayList<>();
+        Set<Object> ids = new HashSet<>();
+        for (Integer index : indexes) {
+            Object id = chunk.get(index).getId();
+            if (part.size() >= rowsPerStatement || (uniqueIds && !ids.add(id))) {
+                parts.add(part);
+                part = new ArrayList<>();
+                ids.clear();
+                ids.add(id);
+            }
+            part.add(index);
+        }
+        if (!part.isEmpty()) {
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    /**
+     * 主键冲突时需要更新的列：调用方设置的列中除去主键、创建时间和版本号
+     *
+     * @param columns 设置默认值之前已绑定的列
+     * @return
+     */
+    private List<Path<?>> getUpsertColumns(Collection<Path<?>> columns) {
+        List<Path<?>> updateColumns = new ArrayList<>(columns.size());
+        for (Path<?> column : columns) {
+            String property = column.getMetadata().getName();
+            if (!ID.equals(property) && !CREATE_TIME.equals(property) && !VERSION.equals(property)) {
+                updateColumns.add(column);
+            }
+        }
+        return updateColumns;
+    }
+
+    /**
+     * 表中的版本号列，没有时为null
+     *
+     * @return
+     */
+    private Path<?> getVersionColumn() {
+        if (!VersionOfEntity.class.isAssignableFrom(entityClass)) {
+            return null;
+        }
+        for (Path<?> column : root.getColumns()) {
+            if (VERSION.equals(column.getMetadata().getName())) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    private String getUpsertFlag(List<Path<?>> updateColumns, String databaseType) {
+        SQLTemplates templates = sqlQueryFactory.getConfiguration().getTemplates();
+        Path<?> versionColumn = getVersionColumn();
+        String version = null == versionColumn ? null : templates.quoteIdentifier(ColumnMetadata.getName(versionColumn));
+        StringBuilder flag = new StringBuilder();
+        if ("PostgreSql".equals(databaseType)) {
+            flag.append(" on conflict (").append(templates.quoteIdentifier(getIdColumn())).append(")");
+            if (updateColumns.isEmpty()) {
+                return flag.append(" do nothing").toString();
+            }
+            flag.append(" do update set ");
+            for (int i = 0; i < updateColumns.size(); i++) {
+                String column = templates.quoteIdentifier(ColumnMetadata.getName(updateColumns.get(i)));
+                flag.append(0 == i ? "" : ", ").append(column).append(" = excluded.").append(column);
+            }
+            if (null != version) {
+                // 冲突时以表名引用已有的行
+                flag.append(", ").append(version).append(" = coalesce(")
+                        .append(templates.quoteIdentifier(root.getTableName())).append(".").append(version)
+                        .append(", 0) + 1");
+            }
+        } else {
+            flag.append(" on duplicate key update ");
+            if (updateColumns.isEmpty()) {
+                String column = templates.quoteIdentifier(getIdColumn());
+                return flag.append(column).append(" = ").append(column).toString();
+            }
+            // MySQL按赋值顺序求值，版本号放在最前，引用的仍是已有行的值
+            if (null != version) {
+                flag.append(version).append(" = coalesce(").append(version).append(", 0) + 1, ");
+            }
+            for (int i = 0; i < updateColumns.size(); i++) {
+                String column = templates.quoteIdentifier(ColumnMetadata.getName(updateColumns.get(i)));
+                flag.append(0 == i ? "" : ", ").append(column).append(" = values(").append(column).append(")");
+            }
+        }
+        return flag.toString();
+    }
+
+    private String getIdColumn() {
+        Path<?> id = (Path<?>) idPath;
+        return id.getMetadata().getParent() == root ? ColumnMetadata.getName(id) : ID;
+    }
+
+    /**
+     * Oracle的MERGE，同一组的行以JDBC批处理执行
+     */
+    private long oracleMerge(List<Path<?>> columns, List<Path<?>> updateColumns, List<Integer> indexes,
+                             List<Map<Path<?>, Object>> rows) {
+        SQLTemplates templates = sqlQueryFactory.getConfiguration().getTemplates();
+        String idColumn = templates.quoteIdentifier(getIdColumn());
+        StringBuilder using = new StringBuilder();
+        StringBuilder insertColumns = new StringBuilder();
+        StringBuilder insertValues = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            String column = templates.quoteIdentifier(ColumnMetadata.getName(columns.get(i)));
+            using.append(0 == i ? "" : ", ").append("? ").append(column);
+            insertColumns.append(0 == i ? "" : ", ").append(column);
+            insertValues.append(0 == i ? "" : ", ").append("s.").append(column);
+        }
+        StringBuilder sql = new StringBuilder("merge into ");
+        if (StringUtils.isNotBlank(root.getSchemaName())) {
+            sql.append(templates.quoteIdentifier(root.getSchemaName())).append(".");
+        }
+        sql.append(templates.quoteIdentifier(root.getTableName())).append(" t using (select ").append(using)
+                .append(" from dual) s on (t.").append(idColumn).append(" = s.").append(idColumn).append(")");
+        for (int i = 0; i < updateColumns.size(); i++) {
+            String column = templates.quoteIdentifier(ColumnMetadata.getName(updateColumns.get(i)));
+            sql.append(0 == i ? " when matched then update set " : ", ")
+                    .append("t.").append(column).append(" = s.").append(column);
+        }
+        Path<?> versionColumn = getVersionColumn();
+        if (!updateColumns.isEmpty() && null != versionColumn) {
+            String version = templates.quoteIdentifier(ColumnMetadata.getName(versionColumn));
+            sql.append(", t.").append(version).append(" = nvl(t.").append(version).append(", 0) + 1");
+        }
+        sql.append(" when not matched then insert (").append(insertColumns).append(") values (")
+                .append(insertValues).append(")");
+
+        Configuration configuration = sqlQueryFactory.getConfiguration();
+        // 直接执行的JDBC语句不经过监听器，需自行记录写入
+        ReplicaRouting.markWrite();
+        try (PreparedStatement statement = sqlQueryFactory.getConnection().prepareStatement(sql.toString())) {
+            for (Integer index : indexes) {
+                Map<Path<?>, Object> row = rows.get(index);
+                for (int i = 0; i < columns.size(); i++) {
+                    configuration.set(statement, columns.get(i), i + 1, row.get(columns.get(i)));
+                }
+                statement.addBatch();
+            }
+            long written = 0;
+            for (int count : statement.executeBatch()) {
+                written += Math.max(count, 0);
+            }
+            return written;
+        } catch (SQLException e) {
+            throw configuration.translate(sql.toString(), Collections.emptyList(), e);
+        }
+    }
+
+    /**
+     * 没有原生语法的数据库逐行处理：先按主键只更新调用方设置的列，不存在时再插入完整的行
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private long mergeRows(List<Entity> chunk, List<Path<?>> updateColumns, List<Integer> indexes,
+                           List<Map<Path<?>, Object>> rows) {
+        Path<?> versionColumn = getVersionColumn();
+        long written = 0;
+        for (Integer index : indexes) {
+            ID id = chunk.get(index).getId();
+            Map<Path<?>, Object> row = rows.get(index);
+            if (!updateColumns.isEmpty()) {
+                SQLUpdateClause updateClause = sqlQueryFactory.update(root).where(idPath.eq(id));
+                for (Path<?> column : updateColumns) {
+                    updateClause.set((Path) column, row.get(column));
+                }
+                if (null != versionColumn) {
+                    updateClause.set((Path<Long>) versionColumn,
+                            Expressions.numberTemplate(Long.class, "coalesce({0}, 0) + 1", versionColumn));
+                }
+                long updated = SqlMetrics.recordRows(updateClause.execute());
+                if (updated > 0) {
+                    written += updated;
+                    continue;
+                }
+            } else if (null != sqlQueryFactory.select(idPath).from(root).where(idPath.eq(id)).fetchFirst()) {
+                continue;
+            }
+            SQLInsertClause insertClause = sqlQueryFactory.insert(root);
+            for (Map.Entry<Path<?>, Object> value : row.entrySet()) {
+                insertClause.set((Path) value.getKey(), value.getValue());
+            }
+            written += SqlMetrics.recordRows(insertClause.execute());
+        }
+        return written;
+    }
+
     @Override
     public void update(Entity entity, boolean withNullBindings) {
         uniqueValidator(entity);
 
-        optimisticLockValidator(entity);
+        Long version = increaseVersion(entity);
 
         markUpdateTimestamp(entity);
 
@@ -121,32 +652,60 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
             entity.setDefaultValue();
         }
 
-        query(new Query() {
+        Long count = query(new Query() {
             @Override
-            public Object executeQuery(SQLQueryFactory sqlQuery) {
-                sqlQueryFactory.update(root)
+            public Long executeQuery(SQLQueryFactory sqlQuery) {
+                return SqlMetrics.recordRows(sqlQueryFactory.update(root)
                         .populate(
                                 entity,
                                 withNullBindings ? DefaultMapper.WITH_NULL_BINDINGS
                                         : DefaultMapper.DEFAULT)
-                        .where(builder.get(ID).eq(entity.getId())).execute();
-                return null;
+                        .where(idAndVersionPredicate(entity, version)).execute());
             }
         });
+        if (entity instanceof VersionOfEntity && 0 == count) {
+            ((VersionOfEntity) entity).setVersion(version);
+            throwOptimisticLockError();
+        }
 
     }
 
-    private void optimisticLockValidator(Entity entity) {
+    /**
+     * 版本号加一，返回原版本号
+     *
+     * @param entity
+     * @return
+     */
+    private Long increaseVersion(Entity entity) {
         if (entity instanceof VersionOfEntity) {
-            Entity one = findOne(builder.get(ID).eq(entity.getId()));
-            VersionOfEntity olde = (VersionOfEntity) one;
             VersionOfEntity newe = (VersionOfEntity) entity;
-            if (null != olde.getVersion() && null != newe.getVersion() && olde.getVersion().longValue() != newe.getVersion().longValue()) {
-                throw new RuntimeException("Jupiter.Persistence.OptimisticLock.Error");
-            }
+            Long version = newe.getVersion();
+            newe.setVersion((null == version ? 0 : version) + 1);
+            return version;
+        }
+        return null;
+    }
 
-            newe.setVersion((null == newe.getVersion() ? 0 : newe.getVersion()) + 1);
+    /**
+     * 按主键更新的条件，带版本号的实例同时比较版本号，由影响行数判断是否已被并发修改
+     * <p>
+     * 实例或库中的版本号为空时不比较，与原来的校验规则一致
+     *
+     * @param entity
+     * @param version 原版本号
+     * @return
+     */
+    private Predicate idAndVersionPredicate(Entity entity, Long version) {
+        BooleanExpression predicate = idPath.eq(entity.getId());
+        if (entity instanceof VersionOfEntity && null != version) {
+            predicate = predicate.and(versionPath.eq(version).or(versionPath.isNull()));
         }
+        return predicate;
+    }
+
+    private void throwOptimisticLockError() {
+        logger.error(MarkerFactory.getMarker(LogMarker.DATABASE), Messages.getMessage("Jupiter.Persistence.OptimisticLock.Error"));
+        throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.OptimisticLock.Error"));
     }
 
     private void markUpdateTimestamp(Entity entity) {
@@ -159,38 +718,59 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
     @Override
     public void update(Collection<Entity> entities, boolean withNullBindings) {
         if (null != entities && !entities.isEmpty()) {
-            query(new Query() {
-                @Override
-                public Object executeQuery(SQLQueryFactory sqlQuery) {
-                    SQLUpdateClause updateClause = sqlQueryFactory.update(root);
-                    for (Entity entity : entities) {
-                        uniqueValidator(entity);
-                        markUpdateTimestamp(entity);
-                        if (withNullBindings) {
-                            entity.setDefaultValue();
-                        }
-                        updateClause
-                                .populate(
-                                        entity,
-                                        withNullBindings ? DefaultMapper.WITH_NULL_BINDINGS
-                                                : DefaultMapper.DEFAULT)
-                                .where(builder.get(ID).eq(entity.getId())).addBatch();
+            updateRows(entities, withNullBindings);
+        }
+    }
+
+    /**
+     * 批量更新非空的实体集合
+     *
+     * @param entities
+     * @param withNullBindings
+     * @return 影响的行数，驱动不返回行数时为负数
+     */
+    protected long updateRows(Collection<Entity> entities, boolean withNullBindings) {
+        List<Long> versions = new ArrayList<>(entities.size());
+        Long count = query(new Query() {
+            @Override
+            public Long executeQuery(SQLQueryFactory sqlQuery) {
+                uniqueValidator(entities);
+                SQLUpdateClause updateClause = sqlQueryFactory.update(root);
+                for (Entity entity : entities) {
+                    Long version = increaseVersion(entity);
+                    versions.add(version);
+                    markUpdateTimestamp(entity);
+                    if (withNullBindings) {
+                        entity.setDefaultValue();
                     }
-                    updateClause.execute();
-                    return null;
+                    updateClause
+                            .populate(
+                                    entity,
+                                    withNullBindings ? DefaultMapper.WITH_NULL_BINDINGS
+                                            : DefaultMapper.DEFAULT)
+                            .where(idAndVersionPredicate(entity, version)).addBatch();
                 }
-            });
-
+                return SqlMetrics.recordRows(updateClause.execute());
+            }
+        });
+        // 批量执行只能拿到影响行数之和，驱动不返回行数时(负数)不做判断
+        if (VersionOfEntity.class.isAssignableFrom(entityClass) && 0 <= count && count < entities.size()) {
+            int i = 0;
+            for (Entity entity : entities) {
+                ((VersionOfEntity) entity).setVersion(versions.get(i++));
+            }
+            throwOptimisticLockError();
         }
-
+        return count;
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Entity findOne(Predicate predicate, OrderSpecifier<?>... orders) {
-        return query(new Query() {
+        return read(new Query() {
             @Override
             public Entity executeQuery(SQLQueryFactory sqlQuery) {
-                SQLQuery<Entity> query = sqlQueryFactory.select(root).from(root);
+                SQLQuery<Entity> query = sqlQuery.select(root).from(root);
                 if (null != predicate) {
                     query.where(predicate);
                 }
@@ -203,11 +783,12 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Entity> findAll(Predicate predicate, OrderSpecifier<?>... orders) {
-        return query(new Query() {
+        return read(new Query() {
             @Override
             public List<Entity> executeQuery(SQLQueryFactory sqlQuery) {
-                SQLQuery<Entity> query = sqlQueryFactory.select(root).from(root);
+                SQLQuery<Entity> query = sqlQuery.select(root).from(root);
                 if (null != predicate) {
                     query.where(predicate);
                 }
@@ -220,13 +801,14 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Entity> findAll(Predicate predicate, int page, int size,
                                 OrderSpecifier<?>... orders) {
         final Page p = new Page(page, size);
-        return query(new Query() {
+        return read(new Query() {
             @Override
             public List<Entity> executeQuery(SQLQueryFactory sqlQuery) {
-                SQLQuery<Entity> query = sqlQueryFactory.select(root).from(root);
+                SQLQuery<Entity> query = sqlQuery.select(root).from(root);
                 if (null != predicate) {
                     query.where(predicate);
                 }
@@ -240,11 +822,105 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
     }
 
     @Override
-    public long count(Predicate predicate) {
+    @Transactional(propagation = Propagation.MANDATORY)
+    public CloseableIterator<Entity> iterateAll(Predicate predicate, OrderSpecifier<?>... orders) {
         return query(new Query() {
+            @Override
+            public CloseableIterator<Entity> executeQuery(SQLQueryFactory sqlQuery) {
+                SQLQuery<Entity> query = sqlQueryFactory.select(root).from(root);
+                if (null != predicate) {
+                    query.where(predicate);
+                }
+                if (null != orders && orders.length > 0) {
+                    query.orderBy(orders);
+                }
+                query.setStatementOptions(getStreamStatementOptions());
+                return query.iterate();
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public CloseableIterator<Entity> iterateAll(Predicate predicate, int page, int size,
+                                                OrderSpecifier<?>... orders) {
+        final Page p = new Page(page, size);
+        return query(new Query() {
+            @Override
+            public CloseableIterator<Entity> executeQuery(SQLQueryFactory sqlQuery) {
+                SQLQuery<Entity> query = sqlQueryFactory.select(root).from(root);
+                if (null != predicate) {
+                    query.where(predicate);
+                }
+                if (null != orders && orders.length > 0) {
+                    query.orderBy(orders);
+                }
+                query.offset((p.getPage() - 1) * p.getSize()).limit(p.getSize());
+                query.setStatementOptions(getStreamStatementOptions());
+                return query.iterate();
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<Entity> streamAll(Predicate predicate, OrderSpecifier<?>... orders) {
+        return toStream(iterateAll(predicate, orders));
+    }
+
+    /**
+     * 逐行处理游标的结果，处理完或出错时关闭游标：事务内沿用当前事务，事务外在主库的只读事务中执行。
+     * 游标读取期间一直占用连接，不使用副本路由
+     *
+     * @param iterator 打开游标
+     * @param action   处理每一行
+     * @return 处理的行数
+     */
+    protected <T> int forEachRow(Supplier<CloseableIterator<T>> iterator, Consumer<? super T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return consume(iterator.get(), action);
+        }
+        return readTransactionTemplate.execute(status -> consume(iterator.get(), action));
+    }
+
+    private static <T> int consume(CloseableIterator<T> iterator, Consumer<? super T> action) {
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+                count++;
+            }
+        } finally {
+            iterator.close();
+        }
+        return count;
+    }
+
+    /**
+     * 包装迭代器为流，关闭流时关闭迭代器
+     *
+     * @param iterator
+     * @return
+     */
+    static <T> Stream<T> toStream(CloseableIterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+    }
+
+    StatementOptions getStreamStatementOptions() {
+        // MySQL驱动只有fetchSize为Integer.MIN_VALUE时才逐行读取，否则仍会一次性读入全部结果
+        int fetchSize = sqlQueryFactory.getConfiguration().getTemplates() instanceof MySQLTemplates
+                ? Integer.MIN_VALUE : STREAM_FETCH_SIZE;
+        return StatementOptions.builder().setFetchSize(fetchSize).build();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public long count(Predicate predicate) {
+        return read(new Query() {
             @Override
             public Long executeQuery(SQLQueryFactory sqlQuery) {
-                SQLQuery query = sqlQueryFactory.select(builder.get(ID).count()).from(root);
+                SQLQuery query = sqlQuery.select(builder.get(ID).count()).from(root);
                 if (null != predicate) {
                     query.where(predicate);
                 }
@@ -262,7 +938,7 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
                 SQLUpdateClause update = sqlQueryFactory.update(root).populate(
                         entity);
                 update.where(predicate);
-                return update.execute();
+                return SqlMetrics.recordRows(update.execute());
             }
         });
     }
@@ -276,15 +952,20 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
                 if (null != predicate) {
                     delete.where(predicate);
                 }
-                return delete.execute();
+                return SqlMetrics.recordRows(delete.execute());
             }
         });
     }
 
     @Override
     public <T> T query(Query query) {
+        return query(query, sqlQueryFactory);
+    }
+
+    private <T> T query(Query query, SQLQueryFactory factory) {
         try {
-            T t = query.executeQuery(sqlQueryFactory);
+            T t = query.executeQuery(factory);
+            SqlMetrics.recordResult(t);
             return t;
         } catch (Exception e) {
             e.printStackTrace();
@@ -293,58 +974,145 @@ public abstract class AbstractQueryDslRepository<Entity extends IdEntity<ID>, ID
         }
     }
 
+    /**
+     * 执行只读查询：事务内沿用当前事务，事务外可用副本时在副本上执行，否则在主库的只读事务中执行
+     *
+     * @param query 只能使用传入的 {@link SQLQueryFactory}
+     * @return
+     */
+    protected <T> T read(Query query) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query(query);
+        }
+        ReplicaRouting replicaRouting = queryDslConfig.getReplicaRouting();
+        if (null != replicaRouting && isReplicaReadAllowed() && replicaRouting.isReplicaReadable()) {
+            return replicaRouting.read(factory -> query(query, factory));
+        }
+        return readTransactionTemplate.execute(status -> query(query));
+    }
+
+    /**
+     * 是否允许查询使用副本
+     *
+     * @return
+     */
+    protected boolean isReplicaReadAllowed() {
+        return true;
+    }
+
     void uniqueValidator(Entity entity) {
-        List<Unique> uniqueList = getUniques();
-        if (!uniqueList.isEmpty()) {
-            for (Unique uni : uniqueList) {
-                try {
-                    String[] propertys = uni.value();
-                    if (null != propertys) {
-                        boolean isEmpty = true;
-                        for (String property : propertys) {
-                            if (null != FieldUtils.readDeclaredField(entity,
-                                    property, true)) {
-                                isEmpty = false;
-                            }
-                        }
-                        if (isEmpty) {
-                            continue;
-                        }
-                    }
-                    BooleanBuilder booleanBuilder = new BooleanBuilder();
-                    if (null != entity.getId()) {
-                        booleanBuilder.and(builder.get(ID).ne(entity.getId()));
-                    }
-                    if (null != propertys) {
-                        for (String property : propertys) {
-                            booleanBuilder.and(((SimpleExpression) entityPathResolver.getProperty(root, property)).eq(FieldUtils
-                                    .readDeclaredField(entity, property, true)));
-                        }
-                    }
-                    long count = count(booleanBuilder.getValue());
-                    if (0 < count) {
-                        logger.error(MarkerFactory.getMarker(LogMarker.DATABASE), Messages.getMessage("Jupiter.Persistence.Unique.Error",
-                                entityClass.getSimpleName(), StringUtils.join(propertys, ",")));
-                        throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.Unique.Error"));
+        uniqueValidator(Collections.singletonList(entity));
+    }
+
+    /**
+     * 批量校验唯一键：批次内部的重复在内存中比较，与库中数据的重复每个唯一键按批查询一次。
+     * 与库中数据的比较在数据库中进行(按库的排序规则和数值比较)，查到任何主键不是该实体自身的行即为重复；
+     * 批次内部只有数据库认为相等的重复(如大小写不同)留给唯一索引拦截
+     *
+     * @param entities
+     */
+    void uniqueValidator(Collection<Entity> entities) {
+        for (UniqueDesc uniqueDesc : UniqueDesc.getUniqueDescs(entityClass)) {
+            String[] propertys = uniqueDesc.getProperties();
+            Map<List<Object>, Entity> keyEntities = readUniqueKeys(uniqueDesc, entities);
+            if (keyEntities.isEmpty()) {
+                continue;
+            }
+
+            Expression<?>[] columns = new Expression<?>[propertys.length];
+            for (int i = 0; i < propertys.length; i++) {
+                columns[i] = entityPathResolver.getProperty(root, propertys[i]);
+            }
+            List<Map.Entry<List<Object>, Entity>> keys = new ArrayList<>(keyEntities.entrySet());
+            for (int from = 0; from < keys.size(); from += UNIQUE_BATCH_SIZE) {
+                List<Map.Entry<List<Object>, Entity>> chunk = keys.subList(from,
+                        Math.min(from + UNIQUE_BATCH_SIZE, keys.size()));
+                Object conflict = query(new Query() {
+                    @Override
+                    public Object executeQuery(SQLQueryFactory sqlQuery) {
+                        return sqlQueryFactory.select(idPath).from(root)
+                                .where(uniqueConflictPredicate(columns, chunk)).fetchFirst();
                     }
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                    logger.error(MarkerFactory.getMarker(LogMarker.DATABASE), Messages.getMessage("Jupiter.Persistence.ReadProperty.Error"), e);
-                    throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.ReadProperty.Error"));
+                });
+                if (null != conflict) {
+                    throwUniqueError(propertys);
                 }
             }
         }
     }
 
+    /**
+     * 只在内存中校验批次内部的唯一键重复，批量写入在切分成并行写入的批次前用它校验整批
+     *
+     * @param entities
+     */
+    void uniqueBatchValidator(Collection<Entity> entities) {
+        for (UniqueDesc uniqueDesc : UniqueDesc.getUniqueDescs(entityClass)) {
+            readUniqueKeys(uniqueDesc, entities);
+        }
+    }
+
+    private Map<List<Object>, Entity> readUniqueKeys(UniqueDesc uniqueDesc, Collection<Entity> entities) {
+        Map<List<Object>, Entity> keyEntities = new LinkedHashMap<>();
+        try {
+            for (Entity entity : entities) {
+                Object[] values = uniqueDesc.readValues(entity);
+                if (null == values) {
+                    continue;
+                }
+                Entity other = keyEntities.put(Arrays.asList(values), entity);
+                if (null != other && other != entity) {
+                    throwUniqueError(uniqueDesc.getProperties());
+                }
+            }
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            logger.error(MarkerFactory.getMarker(LogMarker.DATABASE), Messages.getMessage("Jupiter.Persistence.ReadProperty.Error"), e);
+            throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.ReadProperty.Error"));
+        }
+        return keyEntities;
+    }
+
+    /**
+     * 与批次中任一实体的唯一键相等、且主键不是该实体自身的行：新建的实体没有主键，相等即冲突
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate uniqueConflictPredicate(Expression<?>[] columns, List<Map.Entry<List<Object>, Entity>> keys) {
+        BooleanBuilder booleanBuilder = new BooleanBuilder();
+        List<Object> newValues = new ArrayList<>();
+        for (Map.Entry<List<Object>, Entity> key : keys) {
+            ID id = key.getValue().getId();
+            if (1 == columns.length && null == id) {
+                newValues.add(key.getKey().get(0));
+                continue;
+            }
+            BooleanBuilder keyBuilder = new BooleanBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                SimpleExpression column = (SimpleExpression) columns[i];
+                Object value = key.getKey().get(i);
+                keyBuilder.and(null == value ? column.isNull() : column.eq(value));
+            }
+            if (null != id) {
+                keyBuilder.and(idPath.ne(id));
+            }
+            booleanBuilder.or(keyBuilder.getValue());
+        }
+        if (!newValues.isEmpty()) {
+            booleanBuilder.or(((SimpleExpression) columns[0]).in(newValues));
+        }
+        return booleanBuilder.getValue();
+    }
+
+    private void throwUniqueError(String[] propertys) {
+        logger.error(MarkerFactory.getMarker(LogMarker.DATABASE), Messages.getMessage("Jupiter.Persistence.Unique.Error",
+                entityClass.getSimpleName(), StringUtils.join(propertys, ",")));
+        throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.Unique.Error"));
+    }
+
     List<Unique> getUniques() {
         List<Unique> uniqueList = new ArrayList<Unique>();
-        Uniques uniques = entityClass.getAnnotation(Uniques.class);
-        if (null != uniques) {
-            uniqueList.addAll(Arrays.asList(uniques.values()));
-        }
-        Unique unique = entityClass.getAnnotation(Unique.class);
-        if (null != unique) {
-            uniqueList.add(unique);
+        for (UniqueDesc uniqueDesc : UniqueDesc.getUniqueDescs(entityClass)) {
+            uniqueList.add(uniqueDesc.getUnique());
         }
         return uniqueList;
     }
@@ -0,0 +1,210 @@
+package com.ccl.jersey.codegen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 执行数据库调用的隔离线程池，并发数不超过连接池大小，排队已满时直接拒绝
+ * <p>
+ * 运行环境支持虚拟线程时每个调用使用一个虚拟线程，并发数由信号量限制；否则使用固定大小的平台线程池。
+ * 请求头、MDC和读己之写窗口会带入执行线程；每个调用在执行线程上开始自己的事务，不加入调用方的事务。
+ *
+ * @author ccl
+ */
+public final class AsyncExecutor {
+
+    static final Logger logger = LoggerFactory.getLogger(AsyncExecutor.class);
+
+    /**
+     * 无法读取连接池大小时的并发数
+     */
+    private static final int DEFAULT_CONCURRENCY = 10;
+
+    /**
+     * 排队长度为并发数的倍数
+     */
+    private static final int QUEUE_FACTOR = 8;
+
+    private static final String[] POOL_SIZE_GETTERS = {"getMaximumPoolSize", "getMaxActive", "getMaxTotal",
+            "getMaxPoolSize"};
+
+    /**
+     * 当前线程正在执行的调用所属的执行器
+     */
+    private static final ThreadLocal<AsyncExecutor> CURRENT = new ThreadLocal<>();
+
+    private final ExecutorService executor;
+
+    /**
+     * 虚拟线程下的并发许可，平台线程池时为null
+     */
+    private final Semaphore permits;
+
+    /**
+     * 虚拟线程下已提交未完成的调用数
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final int maxPending;
+
+    /**
+     * @param concurrency 同时执行的调用数，一般等于连接池大小
+     * @param queueSize   等待执行的调用数上限
+     */
+    public AsyncExecutor(int concurrency, int queueSize) {
+        concurrency = Math.max(1, concurrency);
+        queueSize = Math.max(1, queueSize);
+        ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+        if (null != virtualThreadExecutor) {
+            executor = virtualThreadExecutor;
+            permits = new Semaphore(concurrency);
+            maxPending = concurrency + queueSize;
+        } else {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), runnable -> {
+                Thread thread = new Thread(runnable, "repository-async-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            permits = null;
+            maxPending = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 按数据源的连接池大小创建
+     *
+     * @param dataSource
+     * @return
+     */
+    public static AsyncExecutor forDataSource(DataSource dataSource) {
+        int concurrency = getPoolSize(dataSource);
+        return new AsyncExecutor(concurrency, concurrency * QUEUE_FACTOR);
+    }
+
+    /**
+     * 异步执行
+     *
+     * @param supplier
+     * @return 排队已满时返回以 {@link RejectedExecutionException} 失败的结果
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        Map<String, String> headers = RequestHeaderContext.getRequestHeaders();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        Long lastWrite = ReplicaRouting.getLastWrite();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            // 调用方已取消或不再需要结果时不再执行，避免白占连接
+            if (future.isDone()) {
+                return;
+            }
+            CURRENT.set(this);
+            RequestHeaderContext.setRequestHeaders(headers);
+            if (null != mdc) {
+                MDC.setContextMap(mdc);
+            }
+            ReplicaRouting.setLastWrite(lastWrite);
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                CURRENT.remove();
+                RequestHeaderContext.setRequestHeaders(null);
+                MDC.clear();
+                ReplicaRouting.clearWrites();
+            }
+        };
+        try {
+            if (null == permits) {
+                executor.execute(task);
+            } else {
+                executeWithPermit(task);
+            }
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 当前线程是否正在执行本执行器的调用；此时再提交调用并等待结果，执行线程或许可全部被等待者占满时会死锁
+     *
+     * @return
+     */
+    public boolean inExecutor() {
+        return this == CURRENT.get();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void executeWithPermit(Runnable task) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Too many pending repository calls");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    pending.decrementAndGet();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            logger.warn("Create virtual thread executor failed", e);
+            return null;
+        }
+    }
+
+    private static int getPoolSize(DataSource dataSource) {
+        for (String getter : POOL_SIZE_GETTERS) {
+            try {
+                Object size = dataSource.getClass().getMethod(getter).invoke(dataSource);
+                if (size instanceof Integer && (Integer) size > 0) {
+                    return (Integer) size;
+                }
+            } catch (Exception ignored) {
+            }
+        }
+        return DEFAULT_CONCURRENCY;
+    }
+}
@@ -0,0 +1,92 @@
+package com.ccl.jersey.codegen;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * {@link ModelQueryAndBatchUpdateRepository} 的异步门面，调用在 {@link AsyncExecutor} 上执行，不占用请求线程
+ * <p>
+ * 互不依赖的查询可以同时发出再用 {@link CompletableFuture#allOf(CompletableFuture[])} 汇总，
+ * 配合Jersey的 {@code @Suspended AsyncResponse} 在结果就绪后返回。
+ *
+ * @param <Model>  数据模型类
+ * @param <Entity> 实体类
+ * @param <ID>     主键类
+ * @author ccl
+ */
+public class AsyncModelRepository<Model extends DataModel<Entity, ID>, Entity extends IdEntity<ID>, ID extends Serializable> {
+
+    protected final ModelQueryAndBatchUpdateRepository<Model, Entity, ID> repository;
+
+    protected final AsyncExecutor executor;
+
+    public AsyncModelRepository(ModelQueryAndBatchUpdateRepository<Model, Entity, ID> repository,
+                                AsyncExecutor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    /**
+     * 异步执行任意仓储方法
+     *
+     * @param function
+     * @return
+     */
+    public <T> CompletableFuture<T> call(Function<ModelQueryAndBatchUpdateRepository<Model, Entity, ID>, T> function) {
+        return executor.supply(() -> function.apply(repository));
+    }
+
+    public CompletableFuture<Model> createModel(Model model) {
+        return executor.supply(() -> repository.createModel(model));
+    }
+
+    public CompletableFuture<Void> createModels(Collection<Model> models) {
+        return executor.supply(() -> {
+            repository.createModels(models);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Model> updateModel(Model model) {
+        return executor.supply(() -> repository.updateModel(model));
+    }
+
+    public CompletableFuture<Model> updateModelWithNotNull(Model model) {
+        return executor.supply(() -> repository.updateModelWithNotNull(model));
+    }
+
+    public CompletableFuture<Void> deleteModel(ID id) {
+        return executor.supply(() -> {
+            repository.deleteModel(id);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Model> findModelById(ID id) {
+        return executor.supply(() -> repository.findModelById(id));
+    }
+
+    public CompletableFuture<Model> findOneByModel(Filter filter, Sort sort) {
+        return executor.supply(() -> repository.findOneByModel(filter, sort));
+    }
+
+    public CompletableFuture<List<Model>> findAllByModel(Filter filter, Sort sort) {
+        return executor.supply(() -> repository.findAllByModel(filter, sort));
+    }
+
+    public CompletableFuture<Page<Model>> findAllByModel(int page, int size, Filter filter, Sort sort) {
+        return executor.supply(() -> repository.findAllByModel(page, size, filter, sort));
+    }
+
+    public CompletableFuture<Page<Model>> findAllByModelAfter(String continuation, int size, Filter filter,
+                                                              Sort sort) {
+        return executor.supply(() -> repository.findAllByModelAfter(continuation, size, filter, sort));
+    }
+
+    public CompletableFuture<Long> countByModel(Filter filter) {
+        return executor.supply(() -> repository.countByModel(filter));
+    }
+}
@@ -0,0 +1,112 @@
+package com.ccl.jersey.codegen;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * {@link QueryDslRepository} 的异步门面，调用在 {@link AsyncExecutor} 上执行，不占用请求线程
+ * <p>
+ * 每个调用是独立的事务，需要在同一事务中完成的多次写入应放在一个 {@link #call(Function)} 里由仓储的事务方法完成。
+ *
+ * @param <Entity> 实体类
+ * @param <ID>     主键类
+ * @author ccl
+ */
+public class AsyncQueryDslRepository<Entity extends IdEntity<ID>, ID extends Serializable> {
+
+    protected final QueryDslRepository<Entity, ID> repository;
+
+    protected final AsyncExecutor executor;
+
+    public AsyncQueryDslRepository(QueryDslRepository<Entity, ID> repository, AsyncExecutor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    /**
+     * 异步执行任意仓储方法
+     *
+     * @param function
+     * @return
+     */
+    public <T> CompletableFuture<T> call(Function<QueryDslRepository<Entity, ID>, T> function) {
+        return executor.supply(() -> function.apply(repository));
+    }
+
+    public CompletableFuture<Void> create(Entity entity) {
+        return executor.supply(() -> {
+            repository.create(entity);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> create(Collection<Entity> entities) {
+        return executor.supply(() -> {
+            repository.create(entities);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> update(Entity entity, boolean withNullBindings) {
+        return executor.supply(() -> {
+            repository.update(entity, withNullBindings);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> update(Collection<Entity> entities, boolean withNullBindings) {
+        return executor.supply(() -> {
+            repository.update(entities, withNullBindings);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> upsert(Entity entity) {
+        return executor.supply(() -> {
+            repository.upsert(entity);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> upsert(Collection<Entity> entities) {
+        return executor.supply(() -> {
+            repository.upsert(entities);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Entity> findOne(Predicate predicate, OrderSpecifier<?>... orders) {
+        return executor.supply(() -> repository.findOne(predicate, orders));
+    }
+
+    public CompletableFuture<List<Entity>> findAll(Predicate predicate, OrderSpecifier<?>... orders) {
+        return executor.supply(() -> repository.findAll(predicate, orders));
+    }
+
+    public CompletableFuture<List<Entity>> findAll(Predicate predicate, int page, int size,
+                                                   OrderSpecifier<?>... orders) {
+        return executor.supply(() -> repository.findAll(predicate, page, size, orders));
+    }
+
+    public CompletableFuture<Long> count(Predicate predicate) {
+        return executor.supply(() -> repository.count(predicate));
+    }
+
+    public CompletableFuture<Long> updateAll(Entity entity, Predicate predicate) {
+        return executor.supply(() -> repository.updateAll(entity, predicate));
+    }
+
+    public CompletableFuture<Long> deleteAll(Predicate predicate) {
+        return executor.supply(() -> repository.deleteAll(predicate));
+    }
+
+    public <T> CompletableFuture<T> query(QueryDslRepository.Query query) {
+        return executor.supply(() -> repository.query(query));
+    }
+}
@@ -0,0 +1,322 @@
+package com.ccl.jersey.codegen;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 實體對象和模型對象之间的转换计划
+ * <p>
+ * 每对类型只解析一次 {@link BeanDesc}，把需要复制的属性、字段的读写句柄和目标类型预先算好，
+ * 转换时不再按名称查找字段，也不再经过反射的访问检查。
+ *
+ * @author ccl
+ */
+final class BeanConvertPlan {
+
+    private static final String ID = "id";
+
+    private static final String I_18_N_PROPERTY_PREFIX = "i18n";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    /**
+     * 缓存转换计划，按源类型、目标类型两级索引
+     */
+    private static final Map<Class<?>, Map<Class<?>, BeanConvertPlan>> MODEL_TO_ENTITY_PLANS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, Map<Class<?>, BeanConvertPlan>> ENTITY_TO_MODEL_PLANS = new ConcurrentHashMap<>();
+
+    private final MethodHandle constructor;
+
+    private final PropertyCopier[] copiers;
+
+    private final BelongsToCopier[] belongsToCopiers;
+
+    private final boolean modelToEntity;
+
+    private BeanConvertPlan(MethodHandle constructor, List<PropertyCopier> copiers,
+                            List<BelongsToCopier> belongsToCopiers, boolean modelToEntity) {
+        this.constructor = constructor;
+        this.copiers = copiers.toArray(new PropertyCopier[copiers.size()]);
+        this.belongsToCopiers = belongsToCopiers.toArray(new BelongsToCopier[belongsToCopiers.size()]);
+        this.modelToEntity = modelToEntity;
+    }
+
+    /**
+     * 获取模型到實體對象的转换计划
+     *
+     * @param modelClass
+     * @param entityClass
+     * @return
+     */
+    static BeanConvertPlan modelToEntity(Class<?> modelClass, Class<?> entityClass) {
+        Map<Class<?>, BeanConvertPlan> plans = getPlans(MODEL_TO_ENTITY_PLANS, modelClass);
+        BeanConvertPlan plan = plans.get(entityClass);
+        if (null == plan) {
+            plan = buildModelToEntity(modelClass, entityClass);
+            plans.put(entityClass, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * 获取實體對象到模型的转换计划
+     *
+     * @param entityClass
+     * @param modelClass
+     * @return
+     */
+    static BeanConvertPlan entityToModel(Class<?> entityClass, Class<?> modelClass) {
+        Map<Class<?>, BeanConvertPlan> plans = getPlans(ENTITY_TO_MODEL_PLANS, entityClass);
+        BeanConvertPlan plan = plans.get(modelClass);
+        if (null == plan) {
+            plan = buildEntityToModel(entityClass, modelClass);
+            plans.put(modelClass, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * 按计划转换
+     *
+     * @param source
+     * @return
+     */
+    Object convert(Object source) {
+        try {
+            Object target = constructor.invokeExact();
+            for (PropertyCopier copier : copiers) {
+                copier.copy(source, target);
+            }
+            for (BelongsToCopier copier : belongsToCopiers) {
+                copier.copy(source, target);
+            }
+            return target;
+        } catch (BeanConvertException e) {
+            throw e;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            throw new BeanConvertException(modelToEntity ? "Convert model to entity error."
+                    : "Convert entity to model error.", e);
+        }
+    }
+
+    private static Map<Class<?>, BeanConvertPlan> getPlans(Map<Class<?>, Map<Class<?>, BeanConvertPlan>> cachedPlans,
+                                                           Class<?> sourceClass) {
+        Map<Class<?>, BeanConvertPlan> plans = cachedPlans.get(sourceClass);
+        if (null == plans) {
+            plans = new ConcurrentHashMap<>();
+            cachedPlans.put(sourceClass, plans);
+        }
+        return plans;
+    }
+
+    private static BeanConvertPlan buildModelToEntity(Class<?> modelClass, Class<?> entityClass) {
+        try {
+            BeanDesc beanParser = BeanConvertUtils.getModelBeanDesc(modelClass);
+            List<PropertyCopier> copiers = new ArrayList<>();
+            for (PropertyDesc propertyDescriptor : beanParser.getProperties()) {
+                String domainPropertyName = getDomainPropertyName(propertyDescriptor);
+                if (null == domainPropertyName) {
+                    continue;
+                }
+                // 忽略领域类中没有的属性
+                Field declaredField = FieldUtils.getField(entityClass, domainPropertyName, true);
+                if (null != declaredField) {
+                    copiers.add(new PropertyCopier(getter(propertyDescriptor.getPropertyField()),
+                            setter(declaredField), declaredField.getType(), false));
+                }
+            }
+            // 处理属于关联关系
+            List<BelongsToCopier> belongsToCopiers = new ArrayList<>();
+            for (AssociatedDesc belongsTo : beanParser.getBelongsTos()) {
+                if (null != belongsTo.getRootProperty() && belongsTo.getRootProperty().length() > 0) {
+                    belongsToCopiers.add(new BelongsToCopier(
+                            getter(getField(modelClass, belongsTo.getProperty())),
+                            setter(getField(entityClass, belongsTo.getRootProperty())), true));
+                }
+            }
+            return new BeanConvertPlan(constructor(entityClass), copiers, belongsToCopiers, true);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            e.printStackTrace();
+            throw new BeanConvertException("Convert model to entity error.", e);
+        }
+    }
+
+    private static BeanConvertPlan buildEntityToModel(Class<?> entityClass, Class<?> modelClass) {
+        try {
+            BeanDesc beanParser = BeanConvertUtils.getModelBeanDesc(modelClass);
+            List<PropertyCopier> copiers = new ArrayList<>();
+            for (PropertyDesc propertyDescriptor : beanParser.getProperties()) {
+                String domainPropertyName = getDomainPropertyName(propertyDescriptor);
+                if (null == domainPropertyName) {
+                    continue;
+                }
+                // 忽略领域类中没有的属性
+                Field declaredField = FieldUtils.getField(entityClass, domainPropertyName, true);
+                if (null != declaredField) {
+                    copiers.add(new PropertyCopier(getter(declaredField),
+                            setter(propertyDescriptor.getPropertyField()), propertyDescriptor.getType(),
+                            domainPropertyName.startsWith(I_18_N_PROPERTY_PREFIX)));
+                }
+            }
+            // 处理属于关联关系
+            List<BelongsToCopier> belongsToCopiers = new ArrayList<>();
+            for (AssociatedDesc belongsTo : beanParser.getBelongsTos()) {
+                if (null != belongsTo.getRootProperty() && belongsTo.getRootProperty().length() > 0) {
+                    PropertyDesc propertyDesc = beanParser.getProperty(belongsTo.getProperty());
+                    Class<?> propType = propertyDesc.getType();
+                    belongsToCopiers.add(new BelongsToCopier(
+                            getter(getField(entityClass, belongsTo.getRootProperty())),
+                            setter(propertyDesc.getPropertyField()), constructor(propType),
+                            setter(getField(propType, ID))));
+                }
+            }
+            return new BeanConvertPlan(constructor(modelClass), copiers, belongsToCopiers, false);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            e.printStackTrace();
+            throw new BeanConvertException("Convert entity to model error.", e);
+        }
+    }
+
+    /**
+     * 返回模型属性对应的领域属性名，不需要转换时返回null
+     */
+    private static String getDomainPropertyName(PropertyDesc propertyDescriptor) {
+        // 只转换基本数据类型或者枚举的属性
+        Class<?> propertyType = propertyDescriptor.getType();
+        if (!BeanHelper.isPrimitive(propertyType) && !propertyType.isEnum()) {
+            return null;
+        }
+        // 是否有需要忽略的字段
+        if (null != propertyDescriptor.getIgnoreProperty()) {
+            return null;
+        }
+        String domainPropertyName = propertyDescriptor.getName();
+        // 是否对字段重命名
+        Property proField = propertyDescriptor.getProperty();
+        if (null != proField) {
+            String name = proField.name();
+            if (null != name && name.length() > 0) {
+                domainPropertyName = name;
+            }
+        }
+        return domainPropertyName;
+    }
+
+    private static Field getField(Class<?> cls, String fieldName) {
+        Field field = FieldUtils.getField(cls, fieldName, true);
+        if (null == field) {
+            throw new IllegalArgumentException("Cannot locate field " + fieldName + " on " + cls);
+        }
+        return field;
+    }
+
+    private static MethodHandle getter(Field field) throws IllegalAccessException {
+        field.setAccessible(true);
+        return LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+    }
+
+    private static MethodHandle setter(Field field) throws IllegalAccessException {
+        field.setAccessible(true);
+        return LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+    }
+
+    private static MethodHandle constructor(Class<?> cls) throws NoSuchMethodException, IllegalAccessException {
+        Constructor<?> constructor = cls.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return LOOKUP.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+    }
+
+    /**
+     * 复制一个属性，值的类型与目标类型一致时直接赋值，否则交给 {@link DataTypeConvertUtils} 转换
+     */
+    private static final class PropertyCopier {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final Class<?> targetType;
+        private final Class<?> boxedTargetType;
+        private final boolean i18n;
+
+        PropertyCopier(MethodHandle getter, MethodHandle setter, Class<?> targetType, boolean i18n) {
+            this.getter = getter;
+            this.setter = setter;
+            this.targetType = targetType;
+            this.boxedTargetType = ClassUtils.primitiveToWrapper(targetType);
+            this.i18n = i18n;
+        }
+
+        void copy(Object source, Object target) throws Throwable {
+            Object value = (Object) getter.invokeExact(source);
+            if (null == value) {
+                return;
+            }
+            if (value.getClass() != boxedTargetType) {
+                value = DataTypeConvertUtils.convert(value, targetType);
+            }
+            if (i18n) {
+                value = Messages.getMessage(String.valueOf(value));
+            }
+            setter.invokeExact(target, value);
+        }
+    }
+
+    /**
+     * 复制属于关联关系：模型到實體對象时取关联对象的主键，實體對象到模型时用外键构造只有主键的关联对象
+     */
+    private static final class BelongsToCopier {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final MethodHandle associatedConstructor;
+        private final MethodHandle associatedIdSetter;
+        private final boolean modelToEntity;
+
+        BelongsToCopier(MethodHandle getter, MethodHandle setter, boolean modelToEntity) {
+            this.getter = getter;
+            this.setter = setter;
+            this.associatedConstructor = null;
+            this.associatedIdSetter = null;
+            this.modelToEntity = modelToEntity;
+        }
+
+        BelongsToCopier(MethodHandle getter, MethodHandle setter, MethodHandle associatedConstructor,
+                        MethodHandle associatedIdSetter) {
+            this.getter = getter;
+            this.setter = setter;
+            this.associatedConstructor = associatedConstructor;
+            this.associatedIdSetter = associatedIdSetter;
+            this.modelToEntity = false;
+        }
+
+        void copy(Object source, Object target) throws Throwable {
+            Object value = (Object) getter.invokeExact(source);
+            if (modelToEntity) {
+                if (null != value) {
+                    // 关联对象可能是子类，按实际类型读取主键
+                    Object propIdValue = FieldUtils.readField(value, ID, true);
+                    setter.invokeExact(target, propIdValue);
+                }
+            } else if (null != value && !"".equals(value)) {
+                Object propInstance = (Object) associatedConstructor.invokeExact();
+                associatedIdSetter.invokeExact(propInstance, value);
+                setter.invokeExact(target, propInstance);
+            }
+        }
+    }
+}
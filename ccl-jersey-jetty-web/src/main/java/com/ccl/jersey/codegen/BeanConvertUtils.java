@@ -1,9 +1,7 @@
 package com.ccl.jersey.codegen;
 
 import com.querydsl.core.Tuple;
-import org.apache.commons.lang3.reflect.FieldUtils;
 
-import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -13,8 +11,6 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author ccl
  */
 public class BeanConvertUtils {
-    private static final String ID = "id";
-    private static final String I_18_N_PROPERTY_PREFIX = "i18n";
     /**
      * 缓存bean定义
      */
@@ -85,83 +81,10 @@ public class BeanConvertUtils {
      * @return
      */
     public static <T> T convertModelToEntity(Object model, Class<T> entityClass) {
-        try {
-            if (null == model) {
-                return null;
-            }
-
-            T domainInstance = entityClass.newInstance();
-            Class<?> modelClass = model.getClass();
-            BeanDesc beanParser = cachedBeanParser.get(modelClass);
-            if (null == beanParser) {
-                beanParser = new BeanDesc(modelClass);
-                cachedBeanParser.put(modelClass, beanParser);
-            }
-            for (PropertyDesc propertyDescriptor : beanParser.getProperties()) {
-                String voPropertyName = propertyDescriptor.getName();
-                // 只转换基本数据类型或者枚举的属性
-                Class<?> propertyType = propertyDescriptor.getType();
-                if (BeanHelper.isPrimitive(propertyType) || propertyType.isEnum()) {
-
-                    // 是否有需要忽略的字段
-                    IgnoreProperty ignoreField = propertyDescriptor
-                            .getIgnoreProperty();
-                    if (null == ignoreField) {
-                        String domainPropertyName = voPropertyName;
-                        // 是否对字段重命名
-                        Property proField = propertyDescriptor.getProperty();
-                        if (null != proField) {
-                            String name = proField.name();
-                            if (null != name && name.length() > 0) {
-                                domainPropertyName = name;
-                            }
-
-                        }
-
-                        // 忽略领域类中没有的属性
-                        Field declaredField = FieldUtils.getField(entityClass,
-                                domainPropertyName, true);
-                        if (null != declaredField) {
-                            Class<?> domainFieldType = declaredField.getType();
-                            Object propertyValue = propertyDescriptor
-                                    .getValue(model);
-                            if (null != propertyValue) {
-                                propertyValue = DataTypeConvertUtils.convert(
-                                        propertyValue, domainFieldType);
-                                FieldUtils
-                                        .writeField(domainInstance,
-                                                domainPropertyName,
-                                                propertyValue, true);
-                            }
-                        }
-                    }
-                }
-            }
-            // 处理属于关联关系
-            if (beanParser.hasBelongsTo()) {
-                List<AssociatedDesc> belongsTos = beanParser.getBelongsTos();
-                for (AssociatedDesc belongsTo : belongsTos) {
-                    if (null != belongsTo.getRootProperty()
-                            && belongsTo.getRootProperty().length() > 0) {
-                        String property = belongsTo.getProperty();
-                        Object propValue = FieldUtils.readField(model, property,
-                                true);
-                        if (null != propValue) {
-                            Object propIdValue = FieldUtils.readField(
-                                    propValue, ID, true);
-                            FieldUtils.writeField(domainInstance,
-                                    belongsTo.getRootProperty(), propIdValue,
-                                    true);
-                        }
-                    }
-                }
-            }
-            return domainInstance;
-        } catch (InstantiationException | IllegalAccessException e) {
-            e.printStackTrace();
-            throw new BeanConvertException("Convert model to entity error.", e);
+        if (null == model) {
+            return null;
         }
-
+        return (T) BeanConvertPlan.modelToEntity(model.getClass(), entityClass).convert(model);
     }
 
 
@@ -173,94 +96,21 @@ public class BeanConvertUtils {
      * @return
      */
     public static <T> T convertEntityToModel(Object entity, Class<T> modelClass) {
-        try {
-            if (null == entity) {
-                return null;
-            }
-
-            if (entity instanceof Tuple) {
-                return convertTupleToModel((Tuple) entity, modelClass);
-            }
-
-            if (entity instanceof IdEntity) {
-                if (null == ((IdEntity<?>) entity).getId()) {
-                    return null;
-                }
-            }
-
-            T modelInstance = modelClass.newInstance();
-            BeanDesc beanParser = cachedBeanParser.get(modelClass);
-            if (null == beanParser) {
-                beanParser = new BeanDesc(modelClass);
-                cachedBeanParser.put(modelClass, beanParser);
-            }
-            for (PropertyDesc propertyDescriptor : beanParser.getProperties()) {
-                String voPropertyName = propertyDescriptor.getName();
-                // 只转换基本数据类型的属性
-                Class<?> propertyType = propertyDescriptor.getType();
-                if (BeanHelper.isPrimitive(propertyType) || propertyType.isEnum()) {
-                    // 是否有需要忽略的字段
-                    IgnoreProperty ignoreField = propertyDescriptor
-                            .getIgnoreProperty();
-                    if (null == ignoreField) {
-                        String domainPropertyName = voPropertyName;
-                        // 是否对字段重命名
-                        Property proField = propertyDescriptor.getProperty();
-                        if (null != proField) {
-                            String name = proField.name();
-                            if (null != name && name.length() > 0) {
-                                domainPropertyName = name;
-                            }
-
-                        }
-                        // 忽略领域类中没有的属性
-                        Field declaredField = FieldUtils.getField(
-                                entity.getClass(), domainPropertyName, true);
-                        if (null != declaredField) {
-                            Object fieldValue = FieldUtils.readField(entity,
-                                    domainPropertyName, true);
-                            if (null != fieldValue) {
+        if (null == entity) {
+            return null;
+        }
 
-                                fieldValue = DataTypeConvertUtils.convert(
-                                        fieldValue, propertyType);
-                                if (domainPropertyName.startsWith(I_18_N_PROPERTY_PREFIX)) {
-                                    fieldValue = Messages.getMessage(String.valueOf(fieldValue));
-                                }
-                                propertyDescriptor.setValue(modelInstance,
-                                        fieldValue);
-                            }
-                        }
-                    }
-                }
-            }
+        if (entity instanceof Tuple) {
+            return convertTupleToModel((Tuple) entity, modelClass);
+        }
 
-            // 处理属于关联关系
-            if (beanParser.hasBelongsTo()) {
-                List<AssociatedDesc> belongsTos = beanParser.getBelongsTos();
-                for (AssociatedDesc belongsTo : belongsTos) {
-                    if (null != belongsTo.getRootProperty()
-                            && belongsTo.getRootProperty().length() > 0) {
-                        Object assfieldValue = FieldUtils.readField(entity,
-                                belongsTo.getRootProperty(), true);
-                        if (null != assfieldValue && !"".equals(assfieldValue)) {
-                            String property = belongsTo.getProperty();
-                            PropertyDesc propertyDesc = beanParser
-                                    .getProperty(property);
-                            Class<?> propType = propertyDesc.getType();
-                            Object propInstance = propType.newInstance();
-                            FieldUtils.writeField(propInstance, ID,
-                                    assfieldValue, true);
-                            propertyDesc.setValue(modelInstance, propInstance);
-                        }
-                    }
-                }
+        if (entity instanceof IdEntity) {
+            if (null == ((IdEntity<?>) entity).getId()) {
+                return null;
             }
-            return modelInstance;
-        } catch (InstantiationException | IllegalAccessException e) {
-            e.printStackTrace();
-            throw new BeanConvertException("Convert entity to model error.", e);
         }
 
+        return (T) BeanConvertPlan.entityToModel(entity.getClass(), modelClass).convert(entity);
     }
 
     /**
@@ -5,23 +5,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MarkerFactory;
 
-import java.util.ArrayList;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Created by ccl on 2015/7/20.
  * <p>
  * 输出业务日志
+ * <p>
+ * 每条日志都写入日志文件；注册了 {@link LogStorageService} 时再经 {@link BizLogPipeline} 批量异步保存，
+ * 队列长度和溢出处理方式可通过 {@link #configure(int, BizLogPipeline.OverflowPolicy, int, long)} 调整。
  */
 public class BizLog {
+    static final Logger log = LoggerFactory.getLogger(BizLog.class);
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private static final String MBEAN_NAME = "com.ccl.jersey.codegen:type=BizLogPipeline";
+
     private Logger logger;
 
-    private static List<LogStorageService> logStorageServices = new ArrayList<>();
+    private static final List<LogStorageService> logStorageServices = new CopyOnWriteArrayList<>();
+
+    private static volatile BizLogPipeline pipeline;
 
-    private static ExecutorService threadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+    private static boolean shutdownHookAdded;
 
     private BizLog(Class clazz) {
         logger = LoggerFactory
@@ -49,8 +68,8 @@ public class BizLog {
         logMetadata.setUser(user);
         logMetadata.setRemoteHost(RequestHeaderUtils.getRequestHeaders().get("Remote-Host"));
 
-        for (LogStorageService logStorageService : logStorageServices) {
-            threadPool.submit((Runnable) () -> logStorageService.saveLog(logMetadata));
+        if (!logStorageServices.isEmpty()) {
+            getPipeline().publish(logMetadata);
         }
         try {
             logger.info(MarkerFactory.getMarker(LogMarker.BUSINESS), logMetadata.toString());
@@ -65,4 +84,61 @@ public class BizLog {
         logStorageServices.add(logStorageService);
     }
 
+    /**
+     * 替换保存队列，原队列中的日志保存完后关闭
+     *
+     * @param capacity            队列长度
+     * @param overflowPolicy      队列已满时的处理方式
+     * @param batchSize           每批最多条数
+     * @param flushIntervalMillis 日志最长等待时间
+     */
+    public static synchronized void configure(int capacity, BizLogPipeline.OverflowPolicy overflowPolicy,
+                                              int batchSize, long flushIntervalMillis) {
+        BizLogPipeline previous = pipeline;
+        setPipeline(new BizLogPipeline(logStorageServices, capacity, overflowPolicy, batchSize,
+                flushIntervalMillis));
+        if (null != previous) {
+            previous.close(CLOSE_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * 当前的保存队列，用于查看队列深度和丢弃数
+     *
+     * @return
+     */
+    public static BizLogPipeline getPipeline() {
+        BizLogPipeline current = pipeline;
+        if (null != current) {
+            return current;
+        }
+        synchronized (BizLog.class) {
+            if (null == pipeline) {
+                setPipeline(new BizLogPipeline(logStorageServices, DEFAULT_CAPACITY,
+                        BizLogPipeline.OverflowPolicy.DROP_OLDEST, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS));
+            }
+            return pipeline;
+        }
+    }
+
+    private static void setPipeline(BizLogPipeline current) {
+        pipeline = current;
+        if (!shutdownHookAdded) {
+            shutdownHookAdded = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> pipeline.close(CLOSE_TIMEOUT_MILLIS),
+                    "biz-log-shutdown"));
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            try {
+                server.unregisterMBean(name);
+            } catch (InstanceNotFoundException ignored) {
+            }
+            server.registerMBean(current, name);
+        } catch (Exception e) {
+            log.warn("Register BizLogPipeline MBean failed", e);
+        }
+    }
+
 }
@@ -0,0 +1,311 @@
+package com.ccl.jersey.codegen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 业务日志的异步保存队列：有界无锁环形队列，单个线程按批次调用各存储的 {@link LogStorageService#saveLogs(List)}
+ * <p>
+ * 攒够 batchSize 条或最早一条等待超过 flushIntervalMillis 时保存一批；队列已满时按 {@link OverflowPolicy} 处理。
+ *
+ * @author ccl
+ */
+public final class BizLogPipeline implements BizLogPipelineMBean {
+
+    static final Logger logger = LoggerFactory.getLogger(BizLogPipeline.class);
+
+    /**
+     * 队列已满时的处理方式
+     */
+    public enum OverflowPolicy {
+        /**
+         * 等待队列有空位，不丢日志但会拖慢记录日志的线程
+         */
+        BLOCK,
+        /**
+         * 丢弃最早的一条
+         */
+        DROP_OLDEST,
+        /**
+         * 队列超过半满后每 {@link #SAMPLE_RATE} 条只保留一条，已满时丢弃新日志
+         */
+        SAMPLE
+    }
+
+    static final int SAMPLE_RATE = 10;
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * 队列空闲时保存线程的最长休眠
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<LogStorageService> logStorageServices;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final AtomicReferenceArray<LogMetadata> buffer;
+
+    /**
+     * 每个槽位的序号：等于写入位置时可写，等于写入位置+1时可读
+     */
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private final LongAdder published = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder delivered = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    private volatile boolean sleeping;
+
+    /**
+     * @param logStorageServices  日志存储，可在运行中增加
+     * @param capacity            队列长度，向上取2的幂
+     * @param overflowPolicy      队列已满时的处理方式
+     * @param batchSize           每批最多条数
+     * @param flushIntervalMillis 日志最长等待时间
+     */
+    BizLogPipeline(List<LogStorageService> logStorageServices, int capacity, OverflowPolicy overflowPolicy,
+                   int batchSize, long flushIntervalMillis) {
+        this.logStorageServices = logStorageServices;
+        this.overflowPolicy = null == overflowPolicy ? OverflowPolicy.DROP_OLDEST : overflowPolicy;
+        this.capacity = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 30) - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.batchSize = Math.max(1, Math.min(batchSize, this.capacity));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.buffer = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        flusher = new Thread(this::runFlusher, "biz-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 放入队列
+     *
+     * @param logMetadata
+     * @return 是否放入
+     */
+    boolean publish(LogMetadata logMetadata) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                // 存储在保存时又记了业务日志，保存线程不能等自己
+                while (!offer(logMetadata)) {
+                    if (!running || Thread.currentThread() == flusher) {
+                        dropped.increment();
+                        return false;
+                    }
+                    wakeFlusher();
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                }
+                break;
+            case SAMPLE:
+                if (getQueueDepth() >= capacity / 2 && 0 != sampleCounter.getAndIncrement() % SAMPLE_RATE) {
+                    dropped.increment();
+                    return false;
+                }
+                if (!offer(logMetadata)) {
+                    dropped.increment();
+                    return false;
+                }
+                break;
+            default:
+                while (!offer(logMetadata)) {
+                    if (null != poll()) {
+                        dropped.increment();
+                    }
+                }
+        }
+        published.increment();
+        if (sleeping && getQueueDepth() >= batchSize) {
+            wakeFlusher();
+        }
+        return true;
+    }
+
+    /**
+     * 停止接收日志，等待队列中的日志保存完
+     *
+     * @param timeoutMillis
+     */
+    void close(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean offer(LogMetadata logMetadata) {
+        long position = tail.get();
+        for (; ; ) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (0 == difference) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, logMetadata);
+                    sequences.set(index, position + 1);
+                    // 空队列时保存线程可能在长时间休眠，第一条日志需要叫醒它开始计时
+                    if (sleeping && position == head.get()) {
+                        wakeFlusher();
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private LogMetadata poll() {
+        long position = head.get();
+        for (; ; ) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (0 == difference) {
+                if (head.compareAndSet(position, position + 1)) {
+                    LogMetadata logMetadata = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequences.set(index, position + capacity);
+                    return logMetadata;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    private void wakeFlusher() {
+        LockSupport.unpark(flusher);
+    }
+
+    private void runFlusher() {
+        List<LogMetadata> batch = new ArrayList<>(batchSize);
+        long deadline = 0;
+        while (running || getQueueDepth() > 0) {
+            LogMetadata logMetadata = poll();
+            if (null != logMetadata) {
+                if (batch.isEmpty()) {
+                    deadline = System.nanoTime() + flushIntervalNanos;
+                }
+                batch.add(logMetadata);
+                if (batch.size() >= batchSize) {
+                    batch = flush(batch);
+                }
+                continue;
+            }
+            long remaining = batch.isEmpty() ? IDLE_PARK_NANOS : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                batch = flush(batch);
+                continue;
+            }
+            sleeping = true;
+            if (running && 0 == getQueueDepth()) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            sleeping = false;
+        }
+        flush(batch);
+    }
+
+    private List<LogMetadata> flush(List<LogMetadata> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        List<LogMetadata> logMetadatas = Collections.unmodifiableList(batch);
+        for (LogStorageService logStorageService : logStorageServices) {
+            try {
+                logStorageService.saveLogs(logMetadatas);
+                delivered.add(batch.size());
+            } catch (Exception e) {
+                failed.add(batch.size());
+                logger.warn("Save " + batch.size() + " business logs to " + logStorageService.getClass().getName()
+                        + " failed", e);
+            }
+        }
+        return new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        long depth = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(depth, capacity));
+    }
+
+    @Override
+    public String getOverflowPolicy() {
+        return overflowPolicy.name();
+    }
+
+    @Override
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+}
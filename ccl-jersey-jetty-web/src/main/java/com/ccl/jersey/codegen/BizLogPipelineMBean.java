@@ -0,0 +1,43 @@
+package com.ccl.jersey.codegen;
+
+/**
+ * {@link BizLogPipeline} 的JMX接口
+ *
+ * @author ccl
+ */
+public interface BizLogPipelineMBean {
+
+    int getCapacity();
+
+    /**
+     * 队列中等待保存的日志数
+     *
+     * @return
+     */
+    int getQueueDepth();
+
+    String getOverflowPolicy();
+
+    long getPublishedCount();
+
+    /**
+     * 因队列已满或抽样被丢弃的日志数
+     *
+     * @return
+     */
+    long getDroppedCount();
+
+    /**
+     * 保存成功的日志数，每个存储各自计数
+     *
+     * @return
+     */
+    long getDeliveredCount();
+
+    /**
+     * 保存失败的日志数，每个存储各自计数
+     *
+     * @return
+     */
+    long getFailedCount();
+}
@@ -0,0 +1,15 @@
+package com.ccl.jersey.codegen;
+
+/**
+ * 大批量写入的进度回调，并行写入时在写入线程中调用
+ *
+ * @author ccl
+ */
+public interface BulkWriteListener {
+    /**
+     * 一批写入完成或失败
+     *
+     * @param chunk
+     */
+    void onChunk(BulkWriteResult.Chunk chunk);
+}
@@ -0,0 +1,103 @@
+package com.ccl.jersey.codegen;
+
+/**
+ * 大批量写入的参数
+ *
+ * @author ccl
+ */
+public final class BulkWriteOptions {
+
+    public final static int DEFAULT_BATCH_SIZE = 1000;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int parallelism = 1;
+
+    private boolean returnKeys = true;
+
+    private boolean stopOnFailure;
+
+    private BulkWriteListener listener;
+
+    private BulkWriteOptions() {
+    }
+
+    public static BulkWriteOptions options() {
+        return new BulkWriteOptions();
+    }
+
+    /**
+     * 每批的行数，每批在单独的事务中提交
+     *
+     * @param batchSize
+     * @return
+     */
+    public BulkWriteOptions batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * 同时写入的批数，大于1时各批在不同的连接上并行写入
+     *
+     * @param parallelism
+     * @return
+     */
+    public BulkWriteOptions parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 插入时是否取回数据库生成的主键
+     *
+     * @param returnKeys
+     * @return
+     */
+    public BulkWriteOptions returnKeys(boolean returnKeys) {
+        this.returnKeys = returnKeys;
+        return this;
+    }
+
+    /**
+     * 某批失败后是否放弃尚未开始的批
+     *
+     * @param stopOnFailure
+     * @return
+     */
+    public BulkWriteOptions stopOnFailure(boolean stopOnFailure) {
+        this.stopOnFailure = stopOnFailure;
+        return this;
+    }
+
+    /**
+     * 每批完成后的回调
+     *
+     * @param listener
+     * @return
+     */
+    public BulkWriteOptions listener(BulkWriteListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize <= 0 ? DEFAULT_BATCH_SIZE : batchSize;
+    }
+
+    public int getParallelism() {
+        return parallelism <= 0 ? 1 : parallelism;
+    }
+
+    public boolean isReturnKeys() {
+        return returnKeys;
+    }
+
+    public boolean isStopOnFailure() {
+        return stopOnFailure;
+    }
+
+    public BulkWriteListener getListener() {
+        return listener;
+    }
+}
@@ -0,0 +1,135 @@
+package com.ccl.jersey.codegen;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 大批量写入的结果
+ *
+ * @param <ID>
+ * @author ccl
+ */
+public class BulkWriteResult<ID extends Serializable> implements Serializable {
+
+    private final int total;
+
+    private final List<ID> keys;
+
+    private final List<Chunk> chunks;
+
+    public BulkWriteResult(int total, List<ID> keys, List<Chunk> chunks) {
+        this.total = total;
+        this.keys = keys;
+        this.chunks = chunks;
+    }
+
+    /**
+     * 输入的实体个数
+     *
+     * @return
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * 成功写入的行数
+     *
+     * @return
+     */
+    public long getWritten() {
+        long written = 0;
+        for (Chunk chunk : chunks) {
+            written += chunk.getWritten();
+        }
+        return written;
+    }
+
+    /**
+     * 按输入顺序排列的主键，未写入的位置为null
+     *
+     * @return
+     */
+    public List<ID> getKeys() {
+        return keys;
+    }
+
+    /**
+     * 各批的结果，未开始的批不在其中
+     *
+     * @return
+     */
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public List<Chunk> getFailures() {
+        List<Chunk> failures = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            if (chunk.isFailed()) {
+                failures.add(chunk);
+            }
+        }
+        return Collections.unmodifiableList(failures);
+    }
+
+    public boolean hasFailures() {
+        return !getFailures().isEmpty();
+    }
+
+    /**
+     * 一批的结果
+     */
+    public static class Chunk implements Serializable {
+        private final int index;
+        private final int offset;
+        private final int size;
+        private final long written;
+        private final String error;
+
+        public Chunk(int index, int offset, int size, long written, String error) {
+            this.index = index;
+            this.offset = offset;
+            this.size = size;
+            this.written = written;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * 本批第一个实体在输入中的位置
+         *
+         * @return
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isFailed() {
+            return null != error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Chunk %d [%d, %d) written %d%s", index, offset, offset + size, written,
+                    isFailed() ? " failed: " + error : "");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ccl.jersey.codegen;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -76,4 +77,30 @@ public interface CacheService {
 	 *            键
 	 */
 	public void delete(String key);
+
+	/**
+	 * 批量设置值，实现类可用管道一次提交
+	 * 
+	 * @param values
+	 *            键值
+	 * @param seconds
+	 *            到期时间秒数
+	 */
+	public default void setBulk(Map<String, Object> values, int seconds) {
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			set(entry.getKey(), entry.getValue(), seconds);
+		}
+	}
+
+	/**
+	 * 批量删除值，实现类可用管道一次提交
+	 * 
+	 * @param keys
+	 *            键
+	 */
+	public default void deleteBulk(Collection<String> keys) {
+		for (String key : keys) {
+			delete(key);
+		}
+	}
 }
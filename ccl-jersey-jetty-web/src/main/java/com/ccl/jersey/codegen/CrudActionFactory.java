@@ -2,6 +2,7 @@ package com.ccl.jersey.codegen;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.Serializable;
 import java.util.List;
 
@@ -110,6 +111,25 @@ public interface CrudActionFactory<Entity extends IdEntity<ID>, ID extends Seria
      */
     Page<Entity> findAll(@NotNull PageRequest pageable, Entity example, Sort sort);
 
+    /**
+     * 根据实例条件查询，边查询边输出，结果同 {@link #listByExample}
+     *
+     * @param example
+     * @param sort
+     * @return
+     */
+    StreamingOutput streamByExample(Entity example, Sort sort);
+
+    /**
+     * 分页查询，边查询边输出，结果同 {@link #findAll}
+     *
+     * @param pageable
+     * @param example
+     * @param sort
+     * @return
+     */
+    StreamingOutput streamPage(@NotNull PageRequest pageable, Entity example, Sort sort);
+
     /**
      * 删除值对象
      *
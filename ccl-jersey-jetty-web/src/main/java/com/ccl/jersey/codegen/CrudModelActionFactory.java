@@ -2,6 +2,7 @@ package com.ccl.jersey.codegen;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.Serializable;
 import java.util.List;
 
@@ -110,6 +111,25 @@ public interface CrudModelActionFactory<Model extends DataModel<Entity, ID>, Ent
      */
     Page<Model> findAll(@NotNull PageRequest pageable, @Valid Model example, @Valid Sort sort);
 
+    /**
+     * 根据实例条件查询，边查询边输出，结果同 {@link #listByExample}
+     *
+     * @param example
+     * @param sort
+     * @return
+     */
+    StreamingOutput streamByExample(@Valid Model example, @Valid Sort sort);
+
+    /**
+     * 分页查询，边查询边输出，结果同 {@link #findAll}
+     *
+     * @param pageable
+     * @param example
+     * @param sort
+     * @return
+     */
+    StreamingOutput streamPage(@NotNull PageRequest pageable, @Valid Model example, @Valid Sort sort);
+
     /**
      * 删除模型對象
      *
@@ -5,6 +5,8 @@ import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * 提供自定义的过滤功能的仓储服务的接口
@@ -114,6 +116,38 @@ public interface DataQueryAndBatchUpdateRepository<Entity extends IdEntity<ID>,
      */
     List<Entity> findAll(Entity example, Sort sort);
 
+    /**
+     * 流式查询值对象，必须在已有事务中调用(否则抛出异常，事务外使用 forEach)，使用完毕后关闭流
+     *
+     * @param filter
+     * @param sort
+     * @return
+     */
+    Stream<Entity> streamAll(Filter filter, Sort sort);
+
+    /**
+     * 根据实例条件逐行处理查询结果，不一次性加载到内存；不在事务中时自行开启只读事务，返回前关闭结果集
+     *
+     * @param example
+     * @param sort
+     * @param action
+     */
+    void forEach(Entity example, Sort sort, Consumer<? super Entity> action);
+
+    /**
+     * 根据实例条件分页逐行处理本页结果，本页处理完后再统计总数
+     *
+     * @param page
+     * @param size
+     * @param example
+     * @param sort
+     * @param withTotal 为false时不统计总数，{@link Page#getTotalElements()} 为-1
+     * @param action
+     * @return 不含内容的分页信息
+     */
+    Page<Entity> forEach(int page, int size, Entity example, Sort sort, boolean withTotal,
+                         Consumer<? super Entity> action);
+
     /**
      * 分页查询值对象
      *
@@ -136,6 +170,44 @@ public interface DataQueryAndBatchUpdateRepository<Entity extends IdEntity<ID>,
      */
     Page<Entity> findAll(int page, int size, Entity example, Sort sort);
 
+    /**
+     * 分页查询值对象
+     *
+     * @param page
+     * @param size
+     * @param filter
+     * @param sort
+     * @param withTotal 为false时不统计总数，{@link Page#getTotalElements()} 为-1
+     * @return
+     */
+    Page<Entity> findAll(int page, int size, Filter filter, Sort sort, boolean withTotal);
+
+    /**
+     * 分页查询值对象
+     *
+     * @param page
+     * @param size
+     * @param example
+     * @param sort
+     * @param withTotal 为false时不统计总数，{@link Page#getTotalElements()} 为-1
+     * @return
+     */
+    Page<Entity> findAll(int page, int size, Entity example, Sort sort, boolean withTotal);
+
+    /**
+     * 键集分页查询值对象，不统计总数，{@link Page#getTotalElements()} 为-1，深翻页的代价与首页相同
+     * <p>
+     * 首页传入null，之后传入上一页的 {@link Page#getContinuation()}，续查标记为null时表示已到最后一页。
+     * 排序末尾自动追加主键，翻页期间排序和条件应保持不变。
+     *
+     * @param continuation
+     * @param size
+     * @param filter
+     * @param sort
+     * @return
+     */
+    Page<Entity> findAllAfter(String continuation, int size, Filter filter, Sort sort);
+
     /**
      * 统计值对象个数
      *
@@ -6,14 +6,34 @@ import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.*;
 import com.querydsl.sql.RelationalPath;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DynamicSpecifications {
 
+    private static final int MAX_CACHED_PLANS = 4096;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * 按查询根缓存编译好的属性条件和示例条件，同一形状的条件只解析一次属性路径。
+     * 查询根的equals只比较变量名，键中另加实体类型、schema和表名，同名的不同表不会共用计划
+     */
+    private static final Map<List<Object>, Map<String, TermPlan>> TERM_PLANS = new ConcurrentHashMap<>();
+
+    private static final Map<List<Object>, Map<Class<?>, ExamplePlan>> EXAMPLE_PLANS = new ConcurrentHashMap<>();
+
     public static <T> Specification<T> bySearchFilter(final Filter filter) {
         return (root, builder, entityPathResolver) -> {
             if (null != filter) {
@@ -34,44 +54,9 @@ public class DynamicSpecifications {
         };
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
     public static <T> Specification<T> byExample(final T entity) {
-        return (root, builder, entityPathResolver) -> {
-            BooleanBuilder booleanBuilder = new BooleanBuilder();
-            Class entityClass1 = entity.getClass();
-            Field[] fields = entityClass1.getDeclaredFields();
-            for (Field field : fields) {
-                if (!Modifier.isFinal(field.getModifiers())
-                        && !Modifier.isStatic(field.getModifiers())) {
-                    Object value = null;
-                    try {
-                        field.setAccessible(true);
-                        value = field.get(entity);
-                    } catch (IllegalArgumentException
-                            | IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                    if (null != value) {
-                        value = DataTypeConvertUtils
-                                .convert(value, field.getType());
-                        Path property = entityPathResolver
-                                .getProperty(root, field.getName());
-                        if (null != property
-                                && property instanceof SimpleExpression) {
-                            SimpleExpression simpleExpression = (SimpleExpression) property;
-                            if (value instanceof Collection || value.getClass().isArray()) {
-                                booleanBuilder.and(simpleExpression.in(value));
-                            } else {
-                                booleanBuilder.and(simpleExpression.eq(value));
-                            }
-                        }
-
-                    }
-                }
-
-            }
-            return booleanBuilder.getValue();
-        };
+        return (root, builder, entityPathResolver) ->
+                getExamplePlan(entity.getClass(), root, entityPathResolver).toPredicate(entity);
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
@@ -108,158 +93,278 @@ public class DynamicSpecifications {
         return null;
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
     private static <T> BooleanExpression parseTerm(final Term term,
                                                    RelationalPath<T> root, PathBuilder<T> builder,
                                                    EntityPathResolver entityPathResolver) {
-        BooleanExpression booleanExpression = null;
-        Object value = term.getValue();
-        Path<T> expression = entityPathResolver.getProperty(root,
-                term.getProperty());
-        if (null == expression) {
-            expression = (Path<T>) builder.get(term.getProperty());
+        return getTermPlan(term.getProperty(), root, builder, entityPathResolver).toExpression(term);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TermPlan getTermPlan(String property, RelationalPath<T> root, PathBuilder<T> builder,
+                                            EntityPathResolver entityPathResolver) {
+        Map<String, TermPlan> plans = getPlans(TERM_PLANS, root);
+        TermPlan plan = plans.get(property);
+        if (null == plan) {
+            Path<T> expression = entityPathResolver.getProperty(root, property);
+            if (null == expression) {
+                expression = (Path<T>) builder.get(property);
+            }
+            if (null == expression) {
+                throw new IllegalArgumentException("term property ["
+                        + property + "] not found.");
+            }
+            plan = new TermPlan(property, expression);
+            // 属性名来自请求，超过上限后不再缓存，避免无效属性撑大缓存
+            if (plans.size() < MAX_CACHED_PLANS) {
+                plans.put(property, plan);
+            }
         }
-        if (null == expression) {
-            throw new IllegalArgumentException("term property ["
-                    + term.getProperty() + "] not found.");
+        return plan;
+    }
+
+    private static ExamplePlan getExamplePlan(Class<?> exampleClass, RelationalPath<?> root,
+                                              EntityPathResolver entityPathResolver) {
+        Map<Class<?>, ExamplePlan> plans = getPlans(EXAMPLE_PLANS, root);
+        ExamplePlan plan = plans.get(exampleClass);
+        if (null == plan) {
+            plan = new ExamplePlan(exampleClass, root, entityPathResolver);
+            plans.put(exampleClass, plan);
         }
-        if (null == value) {// 空值处理
-            if (expression instanceof SimpleExpression) {
-                SimpleExpression simpleExpression = (SimpleExpression) expression;
-                if (Operator.EQ.equals(term.getOperator())) {
-                    booleanExpression = simpleExpression.isNull();
-                } else {
-                    throw new IllegalArgumentException("term property ["
-                            + term.getProperty()
-                            + "] condition value is empty.");
+        return plan;
+    }
 
-                }
+    private static <K, V> Map<K, V> getPlans(Map<List<Object>, Map<K, V>> cachedPlans, RelationalPath<?> root) {
+        List<Object> key = Arrays.<Object>asList(root.getType(), root.getMetadata(), root.getSchemaName(),
+                root.getTableName());
+        Map<K, V> plans = cachedPlans.get(key);
+        if (null == plans) {
+            plans = new ConcurrentHashMap<>();
+            Map<K, V> old = cachedPlans.putIfAbsent(key, plans);
+            if (null != old) {
+                plans = old;
             }
-        } else {
+        }
+        return plans;
+    }
+
+    /**
+     * 单个属性的条件计划：属性路径和目标类型在编译时确定，每次只做值的转换和表达式构建
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final class TermPlan {
+        private final String property;
+        private final Path expression;
+        private final Class type;
+
+        TermPlan(String property, Path expression) {
+            this.property = property;
+            this.expression = expression;
+            this.type = expression.getType();
+        }
+
+        BooleanExpression toExpression(Term term) {
+            BooleanExpression booleanExpression = null;
+            Object value = term.getValue();
+            if (null == value) {// 空值处理
+                if (expression instanceof SimpleExpression) {
+                    SimpleExpression simpleExpression = (SimpleExpression) expression;
+                    if (Operator.EQ.equals(term.getOperator())) {
+                        booleanExpression = simpleExpression.isNull();
+                    } else {
+                        throw new IllegalArgumentException("term property ["
+                                + property
+                                + "] condition value is empty.");
 
-            if (expression instanceof SimpleExpression) {
-                SimpleExpression simpleExpression = (SimpleExpression) expression;
-                if (value instanceof Collection) {
-                    Collection collection = (Collection) value;
-                    List<Object> list = new ArrayList<>();
-                    for (Object val : collection) {
-                        list.add(DataTypeConvertUtils.convert(val, expression.getType()));
-                    }
-                    collection = list;
-                    switch (term.getOperator()) {
-                        case IN:
-                            booleanExpression = simpleExpression.in(collection);
-                            break;
-                        default:
-                            throw new IllegalArgumentException(
-                                    "term property [" + term.getProperty()
-                                            + "] operator ["
-                                            + term.getOperator()
-                                            + "] collection not support.");
-                    }
-                } else if (value.getClass().isArray()) {
-                    Object[] array = (Object[]) value;
-                    List<Object> list = new ArrayList<>();
-                    for (int i = 0; i < array.length; i++) {
-                        list.add(DataTypeConvertUtils.convert(array[i], expression.getType()));
-                    }
-                    switch (term.getOperator()) {
-                        case IN:
-                            booleanExpression = simpleExpression.in(list);
-                            break;
-                        default:
-                            throw new IllegalArgumentException(
-                                    "term property [" + term.getProperty()
-                                            + "] operator ["
-                                            + term.getOperator()
-                                            + "] array not support.");
                     }
-                } else {
-                    value = DataTypeConvertUtils.convert(value, expression.getType());
+                }
+            } else {
 
-                    switch (term.getOperator()) {
-                        case EQ:
-                            booleanExpression = simpleExpression.eq(value);
-                            break;
-                        case IN:
-                            booleanExpression = simpleExpression.in(value);
-                            break;
-                        default:
-                            if (value instanceof Comparable && expression instanceof ComparableExpression) {
-                                Comparable comparable = (Comparable) value;
-                                ComparableExpression comparableExpression = (ComparableExpression) expression;
-                                switch (term.getOperator()) {
-                                    case GT:
-                                        booleanExpression = comparableExpression
-                                                .gt(comparable);
-                                        break;
-                                    case LT:
-                                        booleanExpression = comparableExpression
-                                                .lt(comparable);
-                                        break;
-                                    case GE:
-                                        booleanExpression = comparableExpression
-                                                .goe(comparable);
-                                        break;
-                                    case LE:
-                                        booleanExpression = comparableExpression
-                                                .loe(comparable);
-                                        break;
-                                    default:
-                                        if (expression instanceof StringExpression) {
-                                            StringExpression stringPath = (StringExpression) expression;
-                                            switch (term.getOperator()) {
-                                                case LK:
-                                                    booleanExpression = stringPath
-                                                            .like(value + "");
-                                                    break;
-                                                default:
-                                                    throw new IllegalArgumentException(
-                                                            "term property ["
-                                                                    + term.getProperty()
-                                                                    + "] operator ["
-                                                                    + term.getOperator()
-                                                                    + "] not support.");
-                                            }
+                if (expression instanceof SimpleExpression) {
+                    SimpleExpression simpleExpression = (SimpleExpression) expression;
+                    if (value instanceof Collection) {
+                        Collection collection = (Collection) value;
+                        List<Object> list = new ArrayList<>();
+                        for (Object val : collection) {
+                            list.add(DataTypeConvertUtils.convert(val, type));
+                        }
+                        collection = list;
+                        switch (term.getOperator()) {
+                            case IN:
+                                booleanExpression = simpleExpression.in(collection);
+                                break;
+                            default:
+                                throw new IllegalArgumentException(
+                                        "term property [" + property
+                                                + "] operator ["
+                                                + term.getOperator()
+                                                + "] collection not support.");
+                        }
+                    } else if (value.getClass().isArray()) {
+                        Object[] array = (Object[]) value;
+                        List<Object> list = new ArrayList<>();
+                        for (int i = 0; i < array.length; i++) {
+                            list.add(DataTypeConvertUtils.convert(array[i], type));
+                        }
+                        switch (term.getOperator()) {
+                            case IN:
+                                booleanExpression = simpleExpression.in(list);
+                                break;
+                            default:
+                                throw new IllegalArgumentException(
+                                        "term property [" + property
+                                                + "] operator ["
+                                                + term.getOperator()
+                                                + "] array not support.");
+                        }
+                    } else {
+                        value = DataTypeConvertUtils.convert(value, type);
+
+                        switch (term.getOperator()) {
+                            case EQ:
+                                booleanExpression = simpleExpression.eq(value);
+                                break;
+                            case IN:
+                                booleanExpression = simpleExpression.in(value);
+                                break;
+                            default:
+                                if (value instanceof Comparable && expression instanceof ComparableExpression) {
+                                    Comparable comparable = (Comparable) value;
+                                    ComparableExpression comparableExpression = (ComparableExpression) expression;
+                                    switch (term.getOperator()) {
+                                        case GT:
+                                            booleanExpression = comparableExpression
+                                                    .gt(comparable);
+                                            break;
+                                        case LT:
+                                            booleanExpression = comparableExpression
+                                                    .lt(comparable);
+                                            break;
+                                        case GE:
+                                            booleanExpression = comparableExpression
+                                                    .goe(comparable);
+                                            break;
+                                        case LE:
+                                            booleanExpression = comparableExpression
+                                                    .loe(comparable);
+                                            break;
+                                        default:
+                                            if (expression instanceof StringExpression) {
+                                                StringExpression stringPath = (StringExpression) expression;
+                                                switch (term.getOperator()) {
+                                                    case LK:
+                                                        booleanExpression = stringPath
+                                                                .like(value + "");
+                                                        break;
+                                                    default:
+                                                        throw new IllegalArgumentException(
+                                                                "term property ["
+                                                                        + property
+                                                                        + "] operator ["
+                                                                        + term.getOperator()
+                                                                        + "] not support.");
+                                                }
 
-                                        }
-                                        break;
+                                            }
+                                            break;
+                                    }
                                 }
-                            }
-                            if (value instanceof Number && expression instanceof NumberExpression) {
-                                Number number = (Number) value;
-                                NumberExpression numberExpression = (NumberExpression) expression;
-                                switch (term.getOperator()) {
-                                    case GT:
-                                        booleanExpression = numberExpression
-                                                .gt(number);
-                                        break;
-                                    case LT:
-                                        booleanExpression = numberExpression
-                                                .lt(number);
-                                        break;
-                                    case GE:
-                                        booleanExpression = numberExpression
-                                                .goe(number);
-                                        break;
-                                    case LE:
-                                        booleanExpression = numberExpression
-                                                .loe(number);
-                                        break;
+                                if (value instanceof Number && expression instanceof NumberExpression) {
+                                    Number number = (Number) value;
+                                    NumberExpression numberExpression = (NumberExpression) expression;
+                                    switch (term.getOperator()) {
+                                        case GT:
+                                            booleanExpression = numberExpression
+                                                    .gt(number);
+                                            break;
+                                        case LT:
+                                            booleanExpression = numberExpression
+                                                    .lt(number);
+                                            break;
+                                        case GE:
+                                            booleanExpression = numberExpression
+                                                    .goe(number);
+                                            break;
+                                        case LE:
+                                            booleanExpression = numberExpression
+                                                    .loe(number);
+                                            break;
+                                    }
                                 }
-                            }
-                            break;
+                                break;
+                        }
                     }
+                } else {
+                    throw new IllegalArgumentException("term property ["
+                            + property + "] not simple expression.");
                 }
-            } else {
-                throw new IllegalArgumentException("term property ["
-                        + term.getProperty() + "] not simple expression.");
             }
+
+            if (null != booleanExpression && term.isNot()) {
+                booleanExpression = booleanExpression.not();
+            }
+            return booleanExpression;
         }
+    }
+
+    /**
+     * 示例对象的条件计划：预先筛选出有对应查询路径的字段，并生成字段的读取句柄
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final class ExamplePlan {
+        private final MethodHandle[] getters;
+        private final Class[] types;
+        private final SimpleExpression[] expressions;
 
-        if (null != booleanExpression && term.isNot()) {
-            booleanExpression = booleanExpression.not();
+        ExamplePlan(Class<?> exampleClass, RelationalPath<?> root, EntityPathResolver entityPathResolver) {
+            List<MethodHandle> getterList = new ArrayList<>();
+            List<Class> typeList = new ArrayList<>();
+            List<SimpleExpression> expressionList = new ArrayList<>();
+            for (Field field : exampleClass.getDeclaredFields()) {
+                if (!Modifier.isFinal(field.getModifiers())
+                        && !Modifier.isStatic(field.getModifiers())) {
+                    Path property = entityPathResolver
+                            .getProperty(root, field.getName());
+                    if (null != property
+                            && property instanceof SimpleExpression) {
+                        try {
+                            field.setAccessible(true);
+                            getterList.add(LOOKUP.unreflectGetter(field).asType(GETTER_TYPE));
+                        } catch (IllegalAccessException e) {
+                            e.printStackTrace();
+                            continue;
+                        }
+                        typeList.add(field.getType());
+                        expressionList.add((SimpleExpression) property);
+                    }
+                }
+            }
+            this.getters = getterList.toArray(new MethodHandle[getterList.size()]);
+            this.types = typeList.toArray(new Class[typeList.size()]);
+            this.expressions = expressionList.toArray(new SimpleExpression[expressionList.size()]);
+        }
+
+        Predicate toPredicate(Object entity) {
+            BooleanBuilder booleanBuilder = new BooleanBuilder();
+            for (int i = 0; i < getters.length; i++) {
+                Object value;
+                try {
+                    value = (Object) getters[i].invokeExact(entity);
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                    continue;
+                }
+                if (null != value) {
+                    value = DataTypeConvertUtils
+                            .convert(value, types[i]);
+                    SimpleExpression simpleExpression = expressions[i];
+                    if (value instanceof Collection || value.getClass().isArray()) {
+                        booleanBuilder.and(simpleExpression.in(value));
+                    } else {
+                        booleanBuilder.and(simpleExpression.eq(value));
+                    }
+                }
+            }
+            return booleanBuilder.getValue();
         }
-        return booleanExpression;
     }
 }
@@ -0,0 +1,222 @@
+package com.ccl.jersey.codegen;
+
+import org.apache.commons.lang3.SerializationUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.util.SafeEncoder;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于Redis的 {@link SetCacheService}，值按Java序列化存储
+ * <p>
+ * 批量方法用管道提交，一批只有一次网络往返。
+ *
+ * @author ccl
+ */
+public class JedisCacheService implements SetCacheService {
+
+    private final JedisPool jedisPool;
+
+    public JedisCacheService(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Override
+    public void set(String key, Object value, int seconds) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (seconds > 0) {
+                jedis.setex(encode(key), seconds, serialize(value));
+            } else {
+                jedis.set(encode(key), serialize(value));
+            }
+        }
+    }
+
+    @Override
+    public void set(String key, Object value) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.set(encode(key), serialize(value));
+        }
+    }
+
+    @Override
+    public void expire(String key, int seconds) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.expire(encode(key), seconds);
+        }
+    }
+
+    @Override
+    public Object get(String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return deserialize(jedis.get(encode(key)));
+        }
+    }
+
+    @Override
+    public Map<String, Object> getBulk(List<String> keys) {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return answer;
+        }
+        List<byte[]> values;
+        try (Jedis jedis = jedisPool.getResource()) {
+            values = jedis.mget(encode(keys));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = deserialize(values.get(i));
+            if (null != value) {
+                answer.put(keys.get(i), value);
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.exists(encode(key));
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(encode(key));
+        }
+    }
+
+    @Override
+    public void setBulk(Map<String, Object> values, int seconds) {
+        if (values.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                if (seconds > 0) {
+                    pipeline.setex(encode(entry.getKey()), seconds, serialize(entry.getValue()));
+                } else {
+                    pipeline.set(encode(entry.getKey()), serialize(entry.getValue()));
+                }
+            }
+            pipeline.sync();
+        }
+    }
+
+    @Override
+    public void deleteBulk(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(encode(keys));
+        }
+    }
+
+    @Override
+    public void add(String key, Object value) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.sadd(encode(key), serialize(value));
+        }
+    }
+
+    @Override
+    public Object pop(String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return deserialize(jedis.spop(encode(key)));
+        }
+    }
+
+    @Override
+    public void remove(String key, Object value) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.srem(encode(key), serialize(value));
+        }
+    }
+
+    @Override
+    public long size(String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.scard(encode(key));
+        }
+    }
+
+    @Override
+    public boolean isMember(String key, Object value) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.sismember(encode(key), serialize(value));
+        }
+    }
+
+    @Override
+    public Set<Object> members(String key) {
+        Set<byte[]> members;
+        try (Jedis jedis = jedisPool.getResource()) {
+            members = jedis.smembers(encode(key));
+        }
+        Set<Object> answer = new HashSet<>();
+        for (byte[] member : members) {
+            answer.add(deserialize(member));
+        }
+        return answer;
+    }
+
+    @Override
+    public void addBulk(String key, Collection<?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.sadd(encode(key), serialize(values));
+        }
+    }
+
+    @Override
+    public void removeBulk(String key, Collection<?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.srem(encode(key), serialize(values));
+        }
+    }
+
+    private static byte[] encode(String key) {
+        return SafeEncoder.encode(key);
+    }
+
+    private static byte[][] encode(Collection<String> keys) {
+        byte[][] answer = new byte[keys.size()][];
+        int i = 0;
+        for (String key : keys) {
+            answer[i++] = encode(key);
+        }
+        return answer;
+    }
+
+    private static byte[] serialize(Object value) {
+        return SerializationUtils.serialize((Serializable) value);
+    }
+
+    private static byte[][] serialize(Collection<?> values) {
+        byte[][] answer = new byte[values.size()][];
+        int i = 0;
+        for (Object value : values) {
+            answer[i++] = serialize(value);
+        }
+        return answer;
+    }
+
+    private static Object deserialize(byte[] value) {
+        return null == value ? null : SerializationUtils.deserialize(value);
+    }
+}
@@ -0,0 +1,131 @@
+package com.ccl.jersey.codegen;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * 流式输出查询结果的JSON：查询在写响应时执行，每读到一行就写出一行，内存占用不随结果条数增长
+ * <p>
+ * 列表输出为数组；分页输出的字段与 {@link Page} 序列化的结果相同，content 在前，分页信息在本页写完后输出。
+ * 写出第一行之前出错时仍返回错误状态；之后出错时响应已提交，客户端收到的是不完整的JSON。
+ *
+ * @author ccl
+ */
+public class JsonStreamingOutput implements StreamingOutput {
+
+    /**
+     * 注解配置与Jersey的 JacksonFeature 默认使用的一致
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().setAnnotationIntrospector(
+            AnnotationIntrospector.pair(new JacksonAnnotationIntrospector(), new JaxbAnnotationIntrospector(
+                    TypeFactory.defaultInstance())));
+
+    /**
+     * 逐行查询
+     */
+    public interface RowSource {
+        void forEach(Consumer<Object> action);
+    }
+
+    /**
+     * 分页逐行查询
+     */
+    public interface PageSource {
+        /**
+         * @param action
+         * @return 不含内容的分页信息
+         */
+        Page<?> forEach(Consumer<Object> action);
+    }
+
+    private final PageSource source;
+
+    private final boolean paged;
+
+    private JsonStreamingOutput(PageSource source, boolean paged) {
+        this.source = source;
+        this.paged = paged;
+    }
+
+    /**
+     * 输出为数组
+     *
+     * @param source
+     * @return
+     */
+    public static JsonStreamingOutput list(RowSource source) {
+        return new JsonStreamingOutput(action -> {
+            source.forEach(action);
+            return null;
+        }, false);
+    }
+
+    /**
+     * 输出为分页
+     *
+     * @param source
+     * @return
+     */
+    public static JsonStreamingOutput page(PageSource source) {
+        return new JsonStreamingOutput(source, true);
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(output);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // 出错时不补全括号，避免客户端把截断的结果当成完整的
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        if (paged) {
+            generator.writeStartObject();
+            generator.writeFieldName("content");
+        }
+        generator.writeStartArray();
+        int[] count = {0};
+        Page<?> page;
+        try {
+            page = source.forEach(row -> {
+                try {
+                    generator.writeObject(row);
+                    // 第一行尽早发出，之后由缓冲区写满时发出
+                    if (0 == count[0]++) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        if (paged) {
+            writePage(generator, page, count[0]);
+            generator.writeEndObject();
+        }
+        generator.close();
+    }
+
+    private void writePage(JsonGenerator generator, Page<?> page, int numberOfElements) throws IOException {
+        generator.writeNumberField("size", page.getSize());
+        generator.writeNumberField("page", page.getPage());
+        generator.writeObjectField("sort", page.getSort());
+        generator.writeStringField("continuation", page.getContinuation());
+        generator.writeNumberField("totalPages", page.getTotalPages());
+        generator.writeNumberField("numberOfElements", numberOfElements);
+        generator.writeNumberField("totalElements", page.getTotalElements());
+        generator.writeBooleanField("firstPage", page.isFirstPage());
+        generator.writeBooleanField("lastPage", !page.hasNextPage(numberOfElements));
+    }
+}
@@ -0,0 +1,199 @@
+package com.ccl.jersey.codegen;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 键集分页的续查标记
+ * <p>
+ * 记录上一页最后一行在各排序属性上的值，下一页用 {@code (c1 > v1) or (c1 = v1 and c2 > v2) ...} 代替OFFSET定位，
+ * 每页的查询代价与页码无关。排序末尾总是追加主键，保证位置唯一。
+ * 标记只保存各值的文本形式，解码时按排序属性的类型还原，不使用Java反序列化。
+ * 排序属性应为非空列，值为null的属性只参与相等比较。
+ *
+ * @author ccl
+ */
+final class KeysetCursor {
+
+    private static final int VERSION = 1;
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * 在排序末尾追加主键升序，已包含主键时原样返回
+     *
+     * @param orders
+     * @param idPath
+     * @return
+     */
+    static OrderSpecifier<?>[] withTieBreaker(OrderSpecifier<?>[] orders, Expression<?> idPath) {
+        if (null == orders) {
+            orders = new OrderSpecifier<?>[0];
+        }
+        for (OrderSpecifier<?> order : orders) {
+            if (idPath.equals(order.getTarget())) {
+                return orders;
+            }
+        }
+        OrderSpecifier<?>[] answer = new OrderSpecifier<?>[orders.length + 1];
+        System.arraycopy(orders, 0, answer, 0, orders.length);
+        answer[orders.length] = new OrderSpecifier(Order.ASC, idPath);
+        return answer;
+    }
+
+    /**
+     * 位于上一页最后一行之后的条件
+     *
+     * @param orders
+     * @param lastKeys
+     * @return
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Predicate after(OrderSpecifier<?>[] orders, Object[] lastKeys) {
+        BooleanBuilder answer = new BooleanBuilder();
+        for (int i = 0; i < orders.length; i++) {
+            if (null == lastKeys[i]) {
+                continue;
+            }
+            BooleanBuilder branch = new BooleanBuilder();
+            for (int j = 0; j < i; j++) {
+                Expression target = orders[j].getTarget();
+                branch.and(null == lastKeys[j] ? Expressions.predicate(Ops.IS_NULL, target)
+                        : Expressions.predicate(Ops.EQ, target, Expressions.constant(lastKeys[j])));
+            }
+            branch.and(Expressions.predicate(Order.ASC.equals(orders[i].getOrder()) ? Ops.GT : Ops.LT,
+                    orders[i].getTarget(), Expressions.constant(lastKeys[i])));
+            answer.or(branch.getValue());
+        }
+        return answer.getValue();
+    }
+
+    /**
+     * 读取行在排序属性上的值，行可以是实体或多表查询的 {@link Tuple}
+     *
+     * @param orders
+     * @param row
+     * @return
+     */
+    static Object[] readKeys(OrderSpecifier<?>[] orders, Object row) {
+        Object[] keys = new Object[orders.length];
+        try {
+            for (int i = 0; i < orders.length; i++) {
+                Path<?> path = (Path<?>) orders[i].getTarget();
+                Object owner = row;
+                if (row instanceof Tuple) {
+                    owner = ((Tuple) row).get(path.getMetadata().getParent());
+                }
+                keys[i] = null == owner ? null : FieldUtils.readField(owner, path.getMetadata().getName(), true);
+            }
+        } catch (IllegalAccessException | ClassCastException e) {
+            e.printStackTrace();
+            throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.ReadProperty.Error"));
+        }
+        return keys;
+    }
+
+    /**
+     * 编码续查标记
+     *
+     * @param keys
+     * @return
+     */
+    static String encode(Object[] keys) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeShort(keys.length);
+            for (Object key : keys) {
+                out.writeBoolean(null != key);
+                if (null != key) {
+                    out.writeUTF(toText(key));
+                }
+            }
+            out.flush();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 解码续查标记，标记与排序不匹配时抛出异常
+     *
+     * @param continuation
+     * @param orders
+     * @return
+     */
+    static Object[] decode(String continuation, OrderSpecifier<?>[] orders) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    Base64.getUrlDecoder().decode(continuation)));
+            if (VERSION != in.readByte() || orders.length != in.readShort()) {
+                throw new IllegalArgumentException(Messages.getMessage("Jupiter.Persistence.Continuation.Error"));
+            }
+            Object[] keys = new Object[orders.length];
+            for (int i = 0; i < orders.length; i++) {
+                if (in.readBoolean()) {
+                    keys[i] = fromText(in.readUTF(), orders[i].getTarget().getType());
+                }
+            }
+            return keys;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException(Messages.getMessage("Jupiter.Persistence.Continuation.Error"), e);
+        }
+    }
+
+    private static String toText(Object value) {
+        if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        }
+        if (value instanceof DateTime) {
+            return String.valueOf(((DateTime) value).getMillis());
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value.toString();
+    }
+
+    private static Object fromText(String text, Class<?> type) {
+        if (Timestamp.class.equals(type)) {
+            return new Timestamp(Long.parseLong(text));
+        }
+        if (Date.class.isAssignableFrom(type)) {
+            return new Date(Long.parseLong(text));
+        }
+        if (DateTime.class.equals(type)) {
+            return new DateTime(Long.parseLong(text));
+        }
+        if (LocalDate.class.equals(type)) {
+            return new LocalDate(text);
+        }
+        if (LocalTime.class.equals(type)) {
+            return new LocalTime(text);
+        }
+        return DataTypeConvertUtils.convert(text, type);
+    }
+}
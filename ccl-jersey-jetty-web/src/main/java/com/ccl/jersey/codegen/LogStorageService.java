@@ -1,5 +1,7 @@
 package com.ccl.jersey.codegen;
 
+import java.util.List;
+
 /**
  * @author ccl
  * @date 2016/11/2.
@@ -11,4 +13,15 @@ public interface LogStorageService {
      * @param logMetadata
      */
     void saveLog(LogMetadata logMetadata);
+
+    /**
+     * 批量保存日誌，{@link BizLog} 按批次调用；默认逐条保存，实现类可改为一次批量写入
+     *
+     * @param logMetadatas 只读列表
+     */
+    default void saveLogs(List<LogMetadata> logMetadatas) {
+        for (LogMetadata logMetadata : logMetadatas) {
+            saveLog(logMetadata);
+        }
+    }
 }
@@ -8,8 +8,10 @@ import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLConnection;
+import java.text.Format;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -21,13 +23,33 @@ import java.util.jar.JarFile;
 public final class Messages {
     private static Map<Locale, AggregateBundle> resourceBundles;
 
+    /**
+     * 最多缓存的语言头取值个数，超出后不再缓存，防止任意请求头撑大缓存
+     */
+    private static final int MAX_CACHED_LANGS = 256;
+
+    /**
+     * 语言头取值对应的Locale
+     */
+    private static final Map<String, Locale> LOCALES = new ConcurrentHashMap<>();
+
+    /**
+     * 每个Locale解析好的消息模板，找不到对应资源时已回退到默认资源
+     */
+    private static final Map<Locale, Map<String, MessageTemplate>> TEMPLATES = new ConcurrentHashMap<>();
+
+    /**
+     * 资源中不存在的键
+     */
+    private static final MessageTemplate MISSING = new MessageTemplate(null, null);
+
     private static final String PROPERTIES_PATH = "i18n/";
 
     private static final String PROPERTIES_FILE_NAME = "messages";
     private static final String PROPERTIES_FILE_POSTFIX = "properties";
 
     static {
-        resourceBundles = new HashMap<>();
+        resourceBundles = new ConcurrentHashMap<>();
         try {
             ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
             Enumeration<URL> resources = contextClassLoader.getResources(PROPERTIES_PATH);
@@ -121,6 +143,7 @@ public final class Messages {
             resourceBundles.put(locale, aggregateBundle);
         }
         aggregateBundle.addData(data);
+        TEMPLATES.clear();
     }
 
     public static Locale getLocale(String lang) {
@@ -137,12 +160,24 @@ public final class Messages {
 
     public static String getMessage(String key, Object... args) {
         String lang = RequestHeaderUtils.getLang();
-        Locale locale = getLocale(lang);
+        Locale locale;
+        if (StringUtils.isBlank(lang)) {
+            locale = Locale.getDefault();
+        } else {
+            locale = LOCALES.get(lang);
+            if (null == locale) {
+                locale = getLocale(lang);
+                if (LOCALES.size() < MAX_CACHED_LANGS) {
+                    LOCALES.put(lang, locale);
+                }
+            }
+        }
         return getMessage(key, locale, args);
     }
 
     public static String getMessage(String key, Locale locale, Object... args) {
-        try {
+        Map<String, MessageTemplate> templates = TEMPLATES.get(locale);
+        if (null == templates) {
             AggregateBundle resourceBundle = resourceBundles.get(locale);
             if (null == resourceBundle) {
                 resourceBundle = resourceBundles.get(Locale.ROOT);
@@ -150,14 +185,80 @@ public final class Messages {
             if (null == resourceBundle) {
                 return null;
             }
-            String string = resourceBundle.getString(key);
-            return MessageFormat.format(string, args);
+            templates = TEMPLATES.computeIfAbsent(locale, l -> new ConcurrentHashMap<>());
+        }
+        MessageTemplate template = templates.get(key);
+        if (null == template) {
+            template = templates.computeIfAbsent(key, k -> parseTemplate(k, locale));
+        }
+        if (MISSING == template) {
+            return key;
+        }
+        try {
+            return template.format(args);
         } catch (Exception e) {
             e.printStackTrace();
             return key;
         }
     }
 
+    private static MessageTemplate parseTemplate(String key, Locale locale) {
+        AggregateBundle resourceBundle = resourceBundles.get(locale);
+        if (null == resourceBundle) {
+            resourceBundle = resourceBundles.get(Locale.ROOT);
+        }
+        Object value = null == resourceBundle ? null : resourceBundle.getContent(key);
+        if (!(value instanceof String)) {
+            return MISSING;
+        }
+        try {
+            // 与MessageFormat.format(String, Object...)一样使用默认Locale解析
+            MessageFormat format = new MessageFormat((String) value);
+            return new MessageTemplate(format, format.format(new Object[0]));
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return MISSING;
+        }
+    }
+
+    /**
+     * 解析好的消息模板
+     * <p>
+     * 只含简单占位符的模板格式化时只读取 {@link MessageFormat} 的状态，可以多线程共用；
+     * 带数字、日期等子格式的模板每次复制后再格式化。
+     */
+    private static final class MessageTemplate {
+        private final MessageFormat format;
+        private final boolean shared;
+        /**
+         * 不带参数时的结果
+         */
+        private final String text;
+
+        MessageTemplate(MessageFormat format, String text) {
+            this.format = format;
+            this.text = text;
+            boolean hasSubformat = false;
+            if (null != format) {
+                for (Format subformat : format.getFormats()) {
+                    if (null != subformat) {
+                        hasSubformat = true;
+                        break;
+                    }
+                }
+            }
+            this.shared = !hasSubformat;
+        }
+
+        String format(Object[] args) {
+            if (null == args || 0 == args.length) {
+                return text;
+            }
+            MessageFormat messageFormat = shared ? format : (MessageFormat) format.clone();
+            return messageFormat.format(args);
+        }
+    }
+
 
     /**
      * A {@link ResourceBundle} whose content is aggregated from multiple source bundles.
@@ -195,6 +296,16 @@ public final class Messages {
             contents.putAll(data);
         }
 
+        /**
+         * 直接读取内容，不存在时返回null而不抛出异常
+         *
+         * @param key
+         * @return
+         */
+        Object getContent(String key) {
+            return contents.get(key);
+        }
+
 
     }
 
@@ -4,6 +4,8 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * 提供自定义的过滤功能的数据模型仓储服务的接口
@@ -100,6 +102,38 @@ public interface ModelQueryAndBatchUpdateRepository<Model extends DataModel<Enti
      */
     List<Model> findAllByModel(Model example, Sort sort);
 
+    /**
+     * 流式查询值对象，逐行转换，必须在已有事务中调用(否则抛出异常，事务外使用 forEachByModel)，使用完毕后关闭流
+     *
+     * @param filter
+     * @param sort
+     * @return
+     */
+    Stream<Model> streamAllByModel(Filter filter, Sort sort);
+
+    /**
+     * 根据实例条件逐行转换并处理查询结果，不一次性加载到内存；不在事务中时自行开启只读事务，返回前关闭结果集
+     *
+     * @param example
+     * @param sort
+     * @param action
+     */
+    void forEachByModel(Model example, Sort sort, Consumer<? super Model> action);
+
+    /**
+     * 根据实例条件分页逐行处理本页结果，本页处理完后再统计总数；关联查询带一对多关联时整页查询后再逐个处理
+     *
+     * @param page
+     * @param size
+     * @param example
+     * @param sort
+     * @param withTotal 为false时不统计总数，{@link Page#getTotalElements()} 为-1
+     * @param action
+     * @return 不含内容的分页信息
+     */
+    Page<Model> forEachByModel(int page, int size, Model example, Sort sort, boolean withTotal,
+                               Consumer<? super Model> action);
+
     /**
      * 分页查询值对象
      *
@@ -122,6 +156,41 @@ public interface ModelQueryAndBatchUpdateRepository<Model extends DataModel<Enti
      */
     Page<Model> findAllByModel(int page, int size, Model example, Sort sort);
 
+    /**
+     * 分页查询值对象
+     *
+     * @param page
+     * @param size
+     * @param filter
+     * @param sort
+     * @param withTotal 为false时不统计总数，{@link Page#getTotalElements()} 为-1
+     * @return
+     */
+    Page<Model> findAllByModel(int page, int size, Filter filter, Sort sort, boolean withTotal);
+
+    /**
+     * 分页查询值对象
+     *
+     * @param page
+     * @param size
+     * @param example
+     * @param sort
+     * @param withTotal 为false时不统计总数，{@link Page#getTotalElements()} 为-1
+     * @return
+     */
+    Page<Model> findAllByModel(int page, int size, Model example, Sort sort, boolean withTotal);
+
+    /**
+     * 键集分页查询值对象，不统计总数，{@link Page#getTotalElements()} 为-1，续查标记的用法同 {@link DataQueryAndBatchUpdateRepository#findAllAfter}
+     *
+     * @param continuation
+     * @param size
+     * @param filter
+     * @param sort
+     * @return
+     */
+    Page<Model> findAllByModelAfter(String continuation, int size, Filter filter, Sort sort);
+
     /**
      * 统计值对象个数
      *
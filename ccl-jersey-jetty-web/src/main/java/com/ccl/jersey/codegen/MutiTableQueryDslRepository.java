@@ -1,11 +1,13 @@
 package com.ccl.jersey.codegen;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.Predicate;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * 支持多表领域查询语言执行仓库
@@ -61,6 +63,43 @@ public interface MutiTableQueryDslRepository<Entity extends IdEntity<ID>, ID ext
 						List<Predicate> predicates, int page, int size,
 						OrderSpecifier<?>... orders);
 
+	/**
+	 * 多表游标查询，结果不一次性加载到内存。
+	 * 必须在已有事务中调用(否则抛出异常)，读取完毕后关闭迭代器以释放结果集
+	 * 
+	 * @param tables
+	 * @param predicates
+	 * @param orders
+	 * @return
+	 */
+	CloseableIterator<Tuple> iterateAll(List<AssociatedTable> tables,
+										List<Predicate> predicates, OrderSpecifier<?>... orders);
+
+	/**
+	 * 多表游标查询一页，用法同 {@link #iterateAll(List, List, OrderSpecifier[])}
+	 * 
+	 * @param tables
+	 * @param predicates
+	 * @param page
+	 * @param size
+	 * @param orders
+	 * @return
+	 */
+	CloseableIterator<Tuple> iterateAll(List<AssociatedTable> tables,
+										List<Predicate> predicates, int page, int size,
+										OrderSpecifier<?>... orders);
+
+	/**
+	 * 多表流式查询，必须在已有事务中调用，使用完毕后关闭流
+	 * 
+	 * @param tables
+	 * @param predicates
+	 * @param orders
+	 * @return
+	 */
+	Stream<Tuple> streamAll(List<AssociatedTable> tables,
+							List<Predicate> predicates, OrderSpecifier<?>... orders);
+
 	/**
 	 * 根据条件 {@link Predicate} 批量更新
 	 * 
@@ -0,0 +1,462 @@
+package com.ccl.jersey.codegen;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 进程内近端缓存，放在 {@link SetCacheService} 前面，热点键命中时不再访问远端缓存。
+ * <p>
+ * 容量同时受条目数和字节数限制，淘汰策略为 W-TinyLFU：新条目先进入窗口LRU，
+ * 窗口溢出的条目只有在频率草图中的访问频率高于主区(SLRU)淘汰对象时才会被接纳。
+ * 值以序列化后的字节保存，字节数即为条目权重，读取时反序列化出新实例，调用方修改结果不会污染缓存。
+ * <p>
+ * 每个键同时登记所属的表模块，模块失效时一并清除；跨节点的失效由调用方定期对比远端记录的模块代次，
+ * 代次变化说明其他节点清除过该模块，本节点清空该模块；按行失效的键由调用方逐个 {@link #invalidate(String)}。
+ *
+ * @author ccl
+ */
+final class NearCache {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVED = 3;
+
+    private final long maximumEntries;
+    private final long maximumBytes;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> moduleKeys = new ConcurrentHashMap<>();
+    private final Map<String, Long> moduleSyncTimes = new ConcurrentHashMap<>();
+    private final Map<String, Object> moduleGenerations = new ConcurrentHashMap<>();
+
+    /**
+     * 远端尚未记录代次
+     */
+    private static final Object NO_GENERATION = new Object();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque window = new AccessOrderDeque();
+    private final AccessOrderDeque probation = new AccessOrderDeque();
+    private final AccessOrderDeque protectedDeque = new AccessOrderDeque();
+
+    private long size;
+    private long weightedSize;
+    private long windowSize;
+    private long protectedSize;
+
+    NearCache(long maximumEntries, long maximumBytes) {
+        this.maximumEntries = Math.max(1, maximumEntries);
+        this.maximumBytes = Math.max(1, maximumBytes);
+        this.windowMaximum = Math.max(1, this.maximumEntries / 100);
+        this.protectedMaximum = (long) ((this.maximumEntries - windowMaximum) * 0.8);
+        this.sketch = new FrequencySketch(this.maximumEntries);
+    }
+
+    /**
+     * 获取值，未命中或已过期返回null
+     *
+     * @param key
+     * @return
+     */
+    Object get(String key) {
+        Node node = data.get(key);
+        if (null == node) {
+            return null;
+        }
+        if (node.isExpired(System.nanoTime())) {
+            invalidate(key);
+            return null;
+        }
+        // 访问记录允许丢失，锁竞争时不阻塞读线程
+        if (evictionLock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        try {
+            return SerializationUtils.deserialize(node.value);
+        } catch (SerializationException e) {
+            invalidate(key);
+            return null;
+        }
+    }
+
+    /**
+     * 放值，无法序列化或超过字节上限的值不缓存
+     *
+     * @param key
+     * @param value
+     * @param seconds 到期时间秒数
+     * @param modules 值所属的表模块
+     */
+    void put(String key, Object value, int seconds, Collection<String> modules) {
+        if (!(value instanceof Serializable)) {
+            return;
+        }
+        byte[] bytes;
+        try {
+            bytes = SerializationUtils.serialize((Serializable) value);
+        } catch (SerializationException e) {
+            return;
+        }
+        if (bytes.length > maximumBytes) {
+            return;
+        }
+        Node node = new Node(key, bytes, System.nanoTime() + seconds * 1000000000L, modules);
+        evictionLock.lock();
+        try {
+            sketch.increment(key.hashCode());
+            Node old = data.put(key, node);
+            if (null != old) {
+                unlink(old);
+            }
+            for (String module : modules) {
+                Set<String> keys = moduleKeys.get(module);
+                if (null == keys) {
+                    keys = ConcurrentHashMap.newKeySet();
+                    moduleKeys.put(module, keys);
+                }
+                keys.add(key);
+            }
+            node.queue = WINDOW;
+            window.addFirst(node);
+            windowSize++;
+            size++;
+            weightedSize += node.weight;
+            evictEntries();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 删除值
+     *
+     * @param key
+     */
+    void invalidate(String key) {
+        evictionLock.lock();
+        try {
+            Node node = data.remove(key);
+            if (null != node) {
+                unlink(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 清除模块下的全部值
+     *
+     * @param module
+     */
+    void invalidateModule(String module) {
+        Set<String> keys = moduleKeys.get(module);
+        if (null != keys) {
+            for (String key : keys) {
+                invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * 与远端的模块代次对账，代次与上次看到的不同时清除模块下的全部值
+     *
+     * @param module
+     * @param generation 远端记录的代次，未记录时为null
+     */
+    void syncGeneration(String module, Object generation) {
+        Object current = null == generation ? NO_GENERATION : generation;
+        Object known = moduleGenerations.put(module, current);
+        if (!current.equals(known)) {
+            invalidateModule(module);
+        }
+    }
+
+    /**
+     * 距离上次对账超过指定间隔时返回true，同一时刻只有一个线程能拿到对账权
+     *
+     * @param module
+     * @param intervalMillis
+     * @return
+     */
+    boolean needsSync(String module, long intervalMillis) {
+        long now = System.currentTimeMillis();
+        Long last = moduleSyncTimes.get(module);
+        if (null == last) {
+            return null == moduleSyncTimes.putIfAbsent(module, now);
+        }
+        return now - last >= intervalMillis && moduleSyncTimes.replace(module, last, now);
+    }
+
+    long size() {
+        return size;
+    }
+
+    long weightedSize() {
+        return weightedSize;
+    }
+
+    private void onAccess(Node node) {
+        sketch.increment(node.key.hashCode());
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToFront(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedDeque.addFirst(node);
+                protectedSize++;
+                while (protectedSize > protectedMaximum) {
+                    Node demoted = protectedDeque.pollLast();
+                    protectedSize--;
+                    demoted.queue = PROBATION;
+                    probation.addFirst(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedDeque.moveToFront(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void evictEntries() {
+        // 窗口溢出的候选者与主区的淘汰对象比较访问频率，胜者留下
+        while (windowSize > windowMaximum) {
+            Node candidate = window.pollLast();
+            windowSize--;
+            candidate.queue = PROBATION;
+            probation.addFirst(candidate);
+            if (size > maximumEntries || weightedSize > maximumBytes) {
+                Node victim = probation.peekLast();
+                if (victim == candidate) {
+                    victim = protectedDeque.peekLast();
+                }
+                if (null == victim || sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                    evict(null == victim ? candidate : victim);
+                } else {
+                    evict(candidate);
+                }
+            }
+        }
+        while (size > maximumEntries || weightedSize > maximumBytes) {
+            Node victim = probation.peekLast();
+            if (null == victim) {
+                victim = protectedDeque.peekLast();
+            }
+            if (null == victim) {
+                victim = window.peekLast();
+            }
+            if (null == victim) {
+                break;
+            }
+            evict(victim);
+        }
+    }
+
+    private void evict(Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+    }
+
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowSize--;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedDeque.remove(node);
+                protectedSize--;
+                break;
+            default:
+                return;
+        }
+        node.queue = REMOVED;
+        size--;
+        weightedSize -= node.weight;
+        for (String module : node.modules) {
+            Set<String> keys = moduleKeys.get(module);
+            if (null != keys && !data.containsKey(node.key)) {
+                keys.remove(node.key);
+            }
+        }
+    }
+
+    private static final class Node {
+        final String key;
+        final byte[] value;
+        final long weight;
+        final long expireAt;
+        final Collection<String> modules;
+        int queue = REMOVED;
+        Node prev;
+        Node next;
+
+        Node(String key, byte[] value, long expireAt, Collection<String> modules) {
+            this.key = key;
+            this.value = value;
+            this.weight = value.length;
+            this.expireAt = expireAt;
+            this.modules = modules;
+        }
+
+        boolean isExpired(long now) {
+            return now - expireAt >= 0;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的双向链表，头部为最近访问
+     */
+    private static final class AccessOrderDeque {
+        private Node head;
+        private Node tail;
+
+        void addFirst(Node node) {
+            node.prev = null;
+            node.next = head;
+            if (null == head) {
+                tail = node;
+            } else {
+                head.prev = node;
+            }
+            head = node;
+        }
+
+        void remove(Node node) {
+            if (null == node.prev) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (null == node.next) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToFront(Node node) {
+            if (head != node) {
+                remove(node);
+                addFirst(node);
+            }
+        }
+
+        Node peekLast() {
+            return tail;
+        }
+
+        Node pollLast() {
+            Node node = tail;
+            if (null != node) {
+                remove(node);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * 4位计数的Count-Min频率草图，计数总量达到采样上限后全部减半以淡化历史频率
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(long maximumEntries) {
+            int capacity = 8;
+            long expected = Math.min(maximumEntries, 1 << 24);
+            while (capacity < expected) {
+                capacity <<= 1;
+            }
+            table = new long[capacity];
+            tableMask = capacity - 1;
+            sampleSize = 10 * capacity;
+        }
+
+        int frequency(int hashCode) {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode) {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++additions == sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int i, int j) {
+            int offset = j << 2;
+            long mask = 0xfL << offset;
+            if ((table[i] & mask) != mask) {
+                table[i] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                count += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions = (additions - (count >>> 2)) >>> 1;
+        }
+
+        private int indexOf(int item, int i) {
+            long hash = (item + SEEDS[i]) * SEEDS[i];
+            hash += hash >>> 32;
+            return ((int) hash) & tableMask;
+        }
+
+        private int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
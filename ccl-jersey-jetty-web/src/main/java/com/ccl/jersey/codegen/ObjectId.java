@@ -51,13 +51,99 @@ public final class ObjectId implements Comparable<ObjectId>, Serializable {
     private final short processIdentifier;
     private final int counter;
 
+    /**
+     * 每个线程一次从 {@link #NEXT_COUNTER} 预留的最大计数个数；新线程从1个开始，每用完一块翻倍
+     */
+    private static final int MAX_COUNTER_BLOCK_SIZE = 1024;
+
+    /**
+     * 机器和进程标识的十六进制，所有主键相同
+     */
+    private static final char[] MACHINE_AND_PROCESS_HEX = new char[10];
+
+    private static final ThreadLocal<Generator> GENERATOR = new ThreadLocal<Generator>() {
+        @Override
+        protected Generator initialValue() {
+            return new Generator();
+        }
+    };
+
     /**
      * Gets a new object id.
+     * <p>
+     * 与 {@code new ObjectId().toString()} 的格式相同，但计数按块从全局计数器预留，直接写入线程内的字符缓冲，
+     * 不创建 {@code ObjectId} 和字节数组。
      *
      * @return the new id
      */
     public static String get() {
-        return new ObjectId().toString();
+        return GENERATOR.get().next();
+    }
+
+    /**
+     * 把24位十六进制主键转换为12字节，用于BINARY(12)列
+     *
+     * @param hexString
+     * @return
+     */
+    public static byte[] toBytes(final String hexString) {
+        return parseHexString(hexString);
+    }
+
+    /**
+     * 把12字节转换为24位十六进制主键
+     *
+     * @param bytes
+     * @return
+     */
+    public static String toHexString(final byte[] bytes) {
+        if (bytes == null || bytes.length != 12) {
+            throw new IllegalArgumentException("need 12 bytes");
+        }
+        char[] chars = new char[24];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_CHARS[bytes[i] >> 4 & 0xF];
+            chars[i * 2 + 1] = HEX_CHARS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 线程内的主键生成状态
+     */
+    private static final class Generator {
+        private final char[] buffer = new char[24];
+        private int second = -1;
+        private int counter;
+        private int limit;
+        private int blockSize;
+
+        Generator() {
+            System.arraycopy(MACHINE_AND_PROCESS_HEX, 0, buffer, 8, MACHINE_AND_PROCESS_HEX.length);
+        }
+
+        String next() {
+            int now = (int) (System.currentTimeMillis() / 1000);
+            if (now != second) {
+                second = now;
+                writeHex(buffer, 0, now, 8);
+            }
+            // 预留的计数跨秒继续使用，用完才重新预留；块从1开始按用量翻倍，
+            // 短命线程只占用很少的计数，避免计数器在一秒内被预留耗尽而回绕
+            if (counter == limit) {
+                blockSize = Math.min(Math.max(blockSize * 2, 1), MAX_COUNTER_BLOCK_SIZE);
+                counter = NEXT_COUNTER.getAndAdd(blockSize);
+                limit = counter + blockSize;
+            }
+            writeHex(buffer, 18, counter++, 6);
+            return new String(buffer);
+        }
+    }
+
+    private static void writeHex(final char[] chars, final int offset, final int value, final int digits) {
+        for (int i = digits - 1, v = value; i >= 0; i--, v >>>= 4) {
+            chars[offset + i] = HEX_CHARS[v & 0xF];
+        }
     }
 
     /**
@@ -445,6 +531,8 @@ public final class ObjectId implements Comparable<ObjectId>, Serializable {
         try {
             MACHINE_IDENTIFIER = createMachineIdentifier();
             PROCESS_IDENTIFIER = createProcessIdentifier();
+            writeHex(MACHINE_AND_PROCESS_HEX, 0, MACHINE_IDENTIFIER, 6);
+            writeHex(MACHINE_AND_PROCESS_HEX, 6, PROCESS_IDENTIFIER, 4);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
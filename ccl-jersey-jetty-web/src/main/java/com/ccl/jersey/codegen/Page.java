@@ -10,10 +10,21 @@ public class Page<T> implements Iterable<T>, Serializable {
     public final static int MAX_RECORDS = 1000;
 
     private List<T> content = new ArrayList<T>();
+    /**
+     * 未统计总数时为-1
+     */
     private long totalElements;
     private int size;
     private int page;
     private Sort sort;
+    /**
+     * 下一页的续查标记，键集分页时有效
+     */
+    private String continuation;
+    /**
+     * 键集分页，是否有下一页只看续查标记
+     */
+    private boolean keyset;
 
     public Page() {
     }
@@ -60,7 +71,27 @@ public class Page<T> implements Iterable<T>, Serializable {
         this.sort = sort;
     }
 
+    public String getContinuation() {
+        return continuation;
+    }
+
+    public void setContinuation(String continuation) {
+        this.continuation = continuation;
+    }
+
+    /**
+     * 标记为键集分页
+     *
+     * @param keyset
+     */
+    void setKeyset(boolean keyset) {
+        this.keyset = keyset;
+    }
+
     public int getTotalPages() {
+        if (!hasTotal()) {
+            return -1;
+        }
         int ceil = (int) Math.ceil((double) totalElements / (double) getSize());
         return getSize() == 0 ? 0 : ceil;
     }
@@ -77,6 +108,15 @@ public class Page<T> implements Iterable<T>, Serializable {
         return totalElements;
     }
 
+    /**
+     * 是否统计了总数
+     *
+     * @return
+     */
+    public boolean hasTotal() {
+        return totalElements >= 0;
+    }
+
     public boolean hasPreviousPage() {
         return getPage() > 1;
     }
@@ -86,6 +126,26 @@ public class Page<T> implements Iterable<T>, Serializable {
     }
 
     public boolean hasNextPage() {
+        return hasNextPage(content.size());
+    }
+
+    /**
+     * 内容不在 content 中(如流式输出)时，按本页实际条数判断是否还有下一页
+     *
+     * @param numberOfElements 本页条数
+     * @return
+     */
+    boolean hasNextPage(int numberOfElements) {
+        if (null != continuation) {
+            return true;
+        }
+        if (keyset) {
+            return false;
+        }
+        if (!hasTotal()) {
+            // 未统计总数时，本页满页即认为可能还有下一页
+            return numberOfElements >= getSize();
+        }
         return getPage() * getSize() < totalElements;
     }
 
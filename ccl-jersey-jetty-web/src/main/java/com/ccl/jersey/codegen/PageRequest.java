@@ -23,6 +23,9 @@ public class PageRequest implements BaseBean {
     @Label("页大小")
     private int size;
 
+    @Label("不统计总数")
+    private boolean noTotal;
+
     public PageRequest() {
         this(0, 0);
     }
@@ -50,6 +53,14 @@ public class PageRequest implements BaseBean {
         this.size = size;
     }
 
+    public boolean isNoTotal() {
+        return noTotal;
+    }
+
+    public void setNoTotal(boolean noTotal) {
+        this.noTotal = noTotal;
+    }
+
     public int getOffset() {
         return (getPage() - 1) * getSize();
     }
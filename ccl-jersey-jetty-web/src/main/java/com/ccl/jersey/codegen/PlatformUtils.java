@@ -24,6 +24,7 @@ public class PlatformUtils {
         this.jdbcSubProtocolToPlatform.put("inetdb2", "DB2");
         this.jdbcSubProtocolToPlatform.put("derby", "Derby");
         this.jdbcSubProtocolToPlatform.put("firebirdsql", "Firebird");
+        this.jdbcSubProtocolToPlatform.put("h2", "H2");
         this.jdbcSubProtocolToPlatform.put("hsqldb", "HsqlDb");
         this.jdbcSubProtocolToPlatform.put("interbase", "Interbase");
         this.jdbcSubProtocolToPlatform.put("sapdb", "SapDB");
@@ -69,6 +70,7 @@ public class PlatformUtils {
         this.jdbcDriverToPlatform.put("org.apache.derby.jdbc.EmbeddedDriver", "Derby");
         this.jdbcDriverToPlatform.put("org.apache.derby.jdbc.ClientDriver", "Derby");
         this.jdbcDriverToPlatform.put("org.firebirdsql.jdbc.FBDriver", "Firebird");
+        this.jdbcDriverToPlatform.put("org.h2.Driver", "H2");
         this.jdbcDriverToPlatform.put("org.hsqldb.jdbcDriver", "HsqlDb");
         this.jdbcDriverToPlatform.put("interbase.interclient.Driver", "Interbase");
         this.jdbcDriverToPlatform.put("com.sap.dbtech.jdbc.DriverSapDB", "SapDB");
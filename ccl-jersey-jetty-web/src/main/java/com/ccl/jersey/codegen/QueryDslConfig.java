@@ -21,6 +21,7 @@ import org.slf4j.MarkerFactory;
 import javax.inject.Provider;
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -34,21 +35,42 @@ public final class QueryDslConfig {
     final Logger logger = LoggerFactory
             .getLogger(Repository.class);
     private final DataSource dataSource;
+    private final String databaseType;
     private final Configuration configuration;
 
     private SQLQueryFactory sqlQueryFactory;
 
+    private final ReplicaRouting replicaRouting;
+
+    private volatile AsyncExecutor asyncExecutor;
+
     public QueryDslConfig(DataSource dataSource) {
+        this(dataSource, Collections.emptyList(), null, 0);
+    }
+
+    /**
+     * 读写分离配置
+     *
+     * @param dataSource           主库
+     * @param replicas             只读副本
+     * @param strategy             副本选择方式，为null时轮询
+     * @param readYourWritesMillis 写入后继续从主库读取的毫秒数，0表示不启用
+     */
+    public QueryDslConfig(DataSource dataSource, List<DataSource> replicas, ReplicaRouting.Strategy strategy,
+                          long readYourWritesMillis) {
         this.dataSource = dataSource;
-        String databaseType = new PlatformUtils().determineDatabaseType(dataSource);
+        databaseType = new PlatformUtils().determineDatabaseType(dataSource);
         SQLTemplates templates;
-        switch (databaseType) {
+        switch (null == databaseType ? "" : databaseType) {
             case "Oracle":
                 templates = new OracleTemplates();
                 break;
             case "PostgreSql":
                 templates = new PostgreSQLTemplates();
                 break;
+            case "H2":
+                templates = new H2Templates();
+                break;
             default:
                 templates = new MySQLTemplates();
                 break;
@@ -61,6 +83,7 @@ public final class QueryDslConfig {
         configuration.register(new LocalTimeType());
         Provider<Connection> provider = new SpringConnectionProvider(dataSource);
         sqlQueryFactory = new SQLQueryFactory(configuration, provider);
+        configuration.addListener(SqlMetrics.getDefault());
         configuration.addListener(new SQLListener() {
             @Override
             public void notifyQuery(QueryMetadata md) {
@@ -107,9 +130,61 @@ public final class QueryDslConfig {
                 printSQL();
             }
         });
+        if (null == replicas || replicas.isEmpty()) {
+            replicaRouting = null;
+        } else {
+            replicaRouting = new ReplicaRouting(configuration, replicas, strategy, readYourWritesMillis);
+            configuration.addListener(new SQLBaseListener() {
+                @Override
+                public void notifyDelete(RelationalPath<?> entity, QueryMetadata md) {
+                    ReplicaRouting.markWrite();
+                }
+
+                @Override
+                public void notifyDeletes(RelationalPath<?> entity, List<QueryMetadata> batches) {
+                    ReplicaRouting.markWrite();
+                }
+
+                @Override
+                public void notifyMerge(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> keys, List<Path<?>> columns, List<Expression<?>> values, SubQueryExpression<?> subQuery) {
+                    ReplicaRouting.markWrite();
+                }
+
+                @Override
+                public void notifyMerges(RelationalPath<?> entity, QueryMetadata md, List<SQLMergeBatch> batches) {
+                    ReplicaRouting.markWrite();
+                }
+
+                @Override
+                public void notifyInsert(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> columns, List<Expression<?>> values, SubQueryExpression<?> subQuery) {
+                    ReplicaRouting.markWrite();
+                }
+
+                @Override
+                public void notifyInserts(RelationalPath<?> entity, QueryMetadata md, List<SQLInsertBatch> batches) {
+                    ReplicaRouting.markWrite();
+                }
+
+                @Override
+                public void notifyUpdate(RelationalPath<?> entity, QueryMetadata md, Map<Path<?>, Expression<?>> updates) {
+                    ReplicaRouting.markWrite();
+                }
+
+                @Override
+                public void notifyUpdates(RelationalPath<?> entity, List<SQLUpdateBatch> batches) {
+                    ReplicaRouting.markWrite();
+                }
+            });
+        }
     }
 
+    /**
+     * 仅在debug开启时把参数代入SQL打印
+     */
     private void printSQL() {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
         String sql = MDC.get(QueryBase.MDC_QUERY);
         String params = MDC.get(QueryBase.MDC_PARAMETERS);
         if (Objects.nonNull(params)) {
@@ -142,6 +217,43 @@ public final class QueryDslConfig {
         return dataSource;
     }
 
+    /**
+     * 数据库类型，取值见 {@link PlatformUtils#determineDatabaseType(DataSource)}
+     *
+     * @return
+     */
+    public String getDatabaseType() {
+        return databaseType;
+    }
+
+    /**
+     * 读写分离配置，未配置副本时为null
+     *
+     * @return
+     */
+    public ReplicaRouting getReplicaRouting() {
+        return replicaRouting;
+    }
+
+    /**
+     * 按主库连接池大小创建的异步执行器，首次使用时创建
+     *
+     * @return
+     */
+    public AsyncExecutor getAsyncExecutor() {
+        AsyncExecutor executor = asyncExecutor;
+        if (null == executor) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (null == executor) {
+                    executor = AsyncExecutor.forDataSource(dataSource);
+                    asyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     public Configuration getConfiguration() {
         return configuration;
     }
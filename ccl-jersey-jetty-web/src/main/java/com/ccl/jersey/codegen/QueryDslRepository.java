@@ -4,9 +4,12 @@ import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.sql.SQLQueryFactory;
 
+import com.mysema.commons.lang.CloseableIterator;
+
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * 领域查询语言执行仓库
@@ -47,6 +50,43 @@ public interface QueryDslRepository<Entity extends IdEntity<ID>, ID extends Seri
      */
     void update(Collection<Entity> entities, boolean withNullBindings);
 
+    /**
+     * 插入或更新实体，主键已存在时只更新调用方设置的非空字段(创建时间除外，默认值只用于插入)并把版本号加一，不做乐观锁校验
+     *
+     * @param entity 实体
+     */
+    void upsert(Entity entity);
+
+    /**
+     * 批量插入或更新实体，使用数据库的原生语法，同列的行合并为一条语句
+     *
+     * @param entities 实体集合
+     */
+    void upsert(Collection<Entity> entities);
+
+    /**
+     * 大批量插入实体：按批拆分，每批在单独的事务中提交，可并行写入，某批失败不影响已提交的批
+     * <p>
+     * MySQL、PostgreSQL使用多行VALUES插入，其他数据库使用JDBC批处理。
+     *
+     * @param entities 实体集合
+     * @param options  写入参数
+     * @return 各批的结果和按输入顺序排列的主键
+     */
+    BulkWriteResult<ID> createInBulk(Collection<Entity> entities, BulkWriteOptions options);
+
+    /**
+     * 大批量更新实体：按批拆分，每批在单独的事务中提交，可并行写入
+     * <p>
+     * MySQL的批处理需要在连接串中开启rewriteBatchedStatements才会合并发送。
+     *
+     * @param entities         实体集合
+     * @param withNullBindings 是否更新空值字段
+     * @param options          写入参数
+     * @return 各批的结果
+     */
+    BulkWriteResult<ID> updateInBulk(Collection<Entity> entities, boolean withNullBindings, BulkWriteOptions options);
+
     /**
      * 单值查询 {@link Predicate}.
      *
@@ -77,6 +117,36 @@ public interface QueryDslRepository<Entity extends IdEntity<ID>, ID extends Seri
     List<Entity> findAll(Predicate predicate, int page, int size,
                          OrderSpecifier<?>... orders);
 
+    /**
+     * 游标方式逐行查询实体，结果不一次性加载到内存。
+     * 必须在已有事务中调用(否则抛出异常)，读取完毕后关闭迭代器以释放结果集；MySQL在关闭前同一连接上不能执行其他查询
+     *
+     * @param predicate
+     * @param orders
+     * @return
+     */
+    CloseableIterator<Entity> iterateAll(Predicate predicate, OrderSpecifier<?>... orders);
+
+    /**
+     * 流式查询实体，见 {@link #iterateAll(Predicate, OrderSpecifier[])}，必须在已有事务中调用，使用完毕后关闭流
+     *
+     * @param predicate
+     * @param orders
+     * @return
+     */
+    Stream<Entity> streamAll(Predicate predicate, OrderSpecifier<?>... orders);
+
+    /**
+     * 游标方式逐行查询一页实体，用法同 {@link #iterateAll(Predicate, OrderSpecifier[])}
+     *
+     * @param predicate
+     * @param page
+     * @param size
+     * @param orders
+     * @return
+     */
+    CloseableIterator<Entity> iterateAll(Predicate predicate, int page, int size, OrderSpecifier<?>... orders);
+
     /**
      * 根据条件 {@link Predicate} 统计记录数
      *
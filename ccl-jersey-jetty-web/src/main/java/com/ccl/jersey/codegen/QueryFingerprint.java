@@ -0,0 +1,350 @@
+package com.ccl.jersey.codegen;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.*;
+import com.querydsl.sql.RelationalPath;
+import org.joda.time.ReadableInstant;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 查询条件的二进制指纹，用作缓存键。
+ * <p>
+ * 直接遍历QueryDSL表达式树，把路径、操作符和常量逐个喂给128位的MurmurHash3(x64)，
+ * 不再拼接 {@code Predicate.toString()} 再做MD5。同一线程复用同一个实例，除最终的键字符串外不产生中间对象。
+ * 只使用跨JVM稳定的内容(字符、数值、枚举名)参与计算，多节点对同一查询得到相同的键。
+ *
+ * @author ccl
+ */
+final class QueryFingerprint implements Visitor<Void, QueryFingerprint> {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_CONSTANT = 1;
+    private static final int TAG_FACTORY = 2;
+    private static final int TAG_OPERATION = 3;
+    private static final int TAG_PARAM = 4;
+    private static final int TAG_PATH = 5;
+    private static final int TAG_SUB_QUERY = 6;
+    private static final int TAG_TEMPLATE = 7;
+    private static final int TAG_ORDER = 8;
+    private static final int TAG_STRING = 9;
+    private static final int TAG_LONG = 10;
+    private static final int TAG_DOUBLE = 11;
+    private static final int TAG_COLLECTION = 12;
+    private static final int TAG_OTHER = 13;
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<QueryFingerprint> LOCAL = new ThreadLocal<QueryFingerprint>() {
+        @Override
+        protected QueryFingerprint initialValue() {
+            return new QueryFingerprint();
+        }
+    };
+
+    private long h1;
+    private long h2;
+    private long pending;
+    private boolean hasPending;
+    private long length;
+
+    private final char[] chars = new char[32];
+
+    private QueryFingerprint() {
+    }
+
+    /**
+     * 开始计算指纹，返回当前线程复用的实例
+     *
+     * @param operation 查询方法名
+     * @return
+     */
+    static QueryFingerprint start(String operation) {
+        QueryFingerprint fingerprint = LOCAL.get();
+        fingerprint.h1 = 0;
+        fingerprint.h2 = 0;
+        fingerprint.pending = 0;
+        fingerprint.hasPending = false;
+        fingerprint.length = 0;
+        return fingerprint.putString(operation);
+    }
+
+    QueryFingerprint putTable(RelationalPath<?> relationalPath) {
+        putString(relationalPath.getSchemaName());
+        return putString(relationalPath.getTableName());
+    }
+
+    QueryFingerprint putExpression(Expression<?> expression) {
+        if (null == expression) {
+            putLong(TAG_NULL);
+        } else {
+            expression.accept(this, this);
+        }
+        return this;
+    }
+
+    QueryFingerprint putOrder(OrderSpecifier<?> order) {
+        if (null == order) {
+            putLong(TAG_NULL);
+            return this;
+        }
+        putLong(TAG_ORDER);
+        putLong(order.getOrder().ordinal());
+        putLong(order.getNullHandling().ordinal());
+        return putExpression(order.getTarget());
+    }
+
+    QueryFingerprint putInt(int value) {
+        putLong(value);
+        return this;
+    }
+
+    QueryFingerprint putString(String value) {
+        if (null == value) {
+            putLong(TAG_NULL);
+            return this;
+        }
+        int len = value.length();
+        putLong(TAG_STRING | ((long) len << 8));
+        int i = 0;
+        for (; i + 4 <= len; i += 4) {
+            putLong(((long) value.charAt(i) << 48) | ((long) value.charAt(i + 1) << 32)
+                    | ((long) value.charAt(i + 2) << 16) | value.charAt(i + 3));
+        }
+        if (i < len) {
+            long word = 0;
+            for (; i < len; i++) {
+                word = (word << 16) | value.charAt(i);
+            }
+            putLong(word);
+        }
+        return this;
+    }
+
+    QueryFingerprint putValue(Object value) {
+        if (null == value) {
+            putLong(TAG_NULL);
+        } else if (value instanceof String) {
+            putString((String) value);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            putLong(TAG_LONG);
+            putLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            putLong(TAG_DOUBLE);
+            putLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Boolean) {
+            putLong(TAG_LONG);
+            putLong((Boolean) value ? 1 : 0);
+        } else if (value instanceof Character) {
+            putLong(TAG_LONG);
+            putLong((Character) value);
+        } else if (value instanceof Enum) {
+            putString(((Enum<?>) value).name());
+        } else if (value instanceof Date) {
+            putLong(TAG_LONG);
+            putLong(((Date) value).getTime());
+        } else if (value instanceof ReadableInstant) {
+            putLong(TAG_LONG);
+            putLong(((ReadableInstant) value).getMillis());
+        } else if (value instanceof Expression) {
+            putExpression((Expression<?>) value);
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            putLong(TAG_COLLECTION);
+            putLong(collection.size());
+            for (Object element : collection) {
+                putValue(element);
+            }
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            putLong(TAG_COLLECTION);
+            putLong(array.length);
+            for (Object element : array) {
+                putValue(element);
+            }
+        } else {
+            // BigDecimal等其他类型的hashCode不保证跨JVM一致，使用字符串形式
+            putLong(TAG_OTHER);
+            putString(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * 结束计算，返回32位十六进制的键
+     *
+     * @return
+     */
+    String toKey() {
+        finish();
+        encode(h1, 0);
+        encode(h2, 16);
+        return new String(chars);
+    }
+
+    @Override
+    public Void visit(Constant<?> expr, QueryFingerprint context) {
+        putLong(TAG_CONSTANT);
+        putValue(expr.getConstant());
+        return null;
+    }
+
+    @Override
+    public Void visit(FactoryExpression<?> expr, QueryFingerprint context) {
+        putLong(TAG_FACTORY);
+        putString(expr.getType().getName());
+        putArgs(expr.getArgs());
+        return null;
+    }
+
+    @Override
+    public Void visit(Operation<?> expr, QueryFingerprint context) {
+        putLong(TAG_OPERATION);
+        putString(expr.getOperator().name());
+        putArgs(expr.getArgs());
+        return null;
+    }
+
+    @Override
+    public Void visit(ParamExpression<?> expr, QueryFingerprint context) {
+        putLong(TAG_PARAM);
+        putString(expr.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Path<?> expr, QueryFingerprint context) {
+        PathMetadata metadata = expr.getMetadata();
+        putLong(TAG_PATH);
+        putLong(metadata.getPathType().ordinal());
+        putValue(metadata.getElement());
+        Path<?> parent = metadata.getParent();
+        if (null == parent) {
+            putLong(TAG_NULL);
+        } else {
+            parent.accept(this, this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(SubQueryExpression<?> expr, QueryFingerprint context) {
+        QueryMetadata metadata = expr.getMetadata();
+        putLong(TAG_SUB_QUERY);
+        putLong(metadata.isDistinct() ? 1 : 0);
+        putExpression(metadata.getProjection());
+        List<JoinExpression> joins = metadata.getJoins();
+        putLong(joins.size());
+        for (JoinExpression join : joins) {
+            putLong(join.getType().ordinal());
+            putExpression(join.getTarget());
+            putExpression(join.getCondition());
+        }
+        putExpression(metadata.getWhere());
+        List<Expression<?>> groupBy = metadata.getGroupBy();
+        putLong(groupBy.size());
+        for (Expression<?> expression : groupBy) {
+            putExpression(expression);
+        }
+        putExpression(metadata.getHaving());
+        List<OrderSpecifier<?>> orderBy = metadata.getOrderBy();
+        putLong(orderBy.size());
+        for (OrderSpecifier<?> order : orderBy) {
+            putOrder(order);
+        }
+        QueryModifiers modifiers = metadata.getModifiers();
+        putValue(modifiers.getLimit());
+        putValue(modifiers.getOffset());
+        return null;
+    }
+
+    @Override
+    public Void visit(TemplateExpression<?> expr, QueryFingerprint context) {
+        putLong(TAG_TEMPLATE);
+        putString(expr.getTemplate().toString());
+        List<?> args = expr.getArgs();
+        putLong(args.size());
+        for (Object arg : args) {
+            putValue(arg);
+        }
+        return null;
+    }
+
+    private void putArgs(List<Expression<?>> args) {
+        putLong(args.size());
+        for (Expression<?> arg : args) {
+            putExpression(arg);
+        }
+    }
+
+    private void putLong(long k) {
+        length += 8;
+        if (!hasPending) {
+            pending = k;
+            hasPending = true;
+            return;
+        }
+        hasPending = false;
+        long k1 = pending;
+        long k2 = k;
+
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private void finish() {
+        if (hasPending) {
+            long k1 = pending;
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            hasPending = false;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+    }
+
+    private void encode(long value, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX_CHARS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,189 @@
+package com.ccl.jersey.codegen;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQueryFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 读写分离：事务外的查询分发到只读副本，写入和事务内的查询仍在主库
+ * <p>
+ * 同一线程写入后的 readYourWritesMillis 毫秒内，查询也回到主库，避免读到副本尚未同步的数据。
+ * 线程被下一个请求复用前可调用 {@link #clearWrites()} 结束这个窗口。
+ *
+ * @author ccl
+ */
+public final class ReplicaRouting {
+
+    /**
+     * 副本选择方式
+     */
+    public enum Strategy {
+        /**
+         * 轮流使用各副本
+         */
+        ROUND_ROBIN,
+        /**
+         * 使用最近查询耗时最短的副本
+         */
+        LEAST_LATENCY
+    }
+
+    /**
+     * 查询失败时计入的耗时，使最短耗时策略暂时避开该副本
+     */
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int PROBE_INTERVAL = 16;
+
+    private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+    private final List<Replica> replicas;
+
+    private final Strategy strategy;
+
+    private final long readYourWritesNanos;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaRouting(Configuration configuration, List<DataSource> dataSources, Strategy strategy,
+                   long readYourWritesMillis) {
+        List<Replica> list = new ArrayList<>(dataSources.size());
+        for (DataSource dataSource : dataSources) {
+            list.add(new Replica(configuration, dataSource));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        this.strategy = null == strategy ? Strategy.ROUND_ROBIN : strategy;
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, readYourWritesMillis));
+    }
+
+    /**
+     * 记录当前线程的写入
+     */
+    static void markWrite() {
+        LAST_WRITE.set(System.nanoTime());
+    }
+
+    static Long getLastWrite() {
+        return LAST_WRITE.get();
+    }
+
+    /**
+     * 把其他线程的写入时间带入当前线程，用于异步执行
+     *
+     * @param lastWrite
+     */
+    static void setLastWrite(Long lastWrite) {
+        if (null == lastWrite) {
+            LAST_WRITE.remove();
+        } else {
+            LAST_WRITE.set(lastWrite);
+        }
+    }
+
+    /**
+     * 结束当前线程的读己之写窗口
+     */
+    public static void clearWrites() {
+        LAST_WRITE.remove();
+    }
+
+    /**
+     * 当前查询能否使用副本：不在事务中，且不在本线程写入后的窗口内
+     *
+     * @return
+     */
+    boolean isReplicaReadable() {
+        if (replicas.isEmpty() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        Long lastWrite = LAST_WRITE.get();
+        if (null == lastWrite) {
+            return true;
+        }
+        if (System.nanoTime() - lastWrite < readYourWritesNanos) {
+            return false;
+        }
+        LAST_WRITE.remove();
+        return true;
+    }
+
+    /**
+     * 在选中副本的只读事务中执行查询
+     *
+     * @param reader
+     * @return
+     */
+    <T> T read(Function<SQLQueryFactory, T> reader) {
+        Replica replica = select();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = replica.transactionTemplate.execute(status -> reader.apply(replica.sqlQueryFactory));
+            failed = false;
+            return result;
+        } finally {
+            replica.recordLatency(System.nanoTime() - start + (failed ? FAILURE_PENALTY_NANOS : 0));
+        }
+    }
+
+    public List<DataSource> getReplicas() {
+        List<DataSource> dataSources = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            dataSources.add(replica.dataSource);
+        }
+        return dataSources;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    private Replica select() {
+        int sequence = next.getAndIncrement() & Integer.MAX_VALUE;
+        // 最短耗时策略也定期轮询一次，让变慢或失败过的副本有机会重新测量
+        if (Strategy.LEAST_LATENCY == strategy && 0 != sequence % PROBE_INTERVAL) {
+            Replica fastest = replicas.get(0);
+            for (Replica replica : replicas) {
+                if (replica.latency.get() < fastest.latency.get()) {
+                    fastest = replica;
+                }
+            }
+            return fastest;
+        }
+        return replicas.get(sequence % replicas.size());
+    }
+
+    private static final class Replica {
+        private final DataSource dataSource;
+        private final SQLQueryFactory sqlQueryFactory;
+        private final TransactionTemplate transactionTemplate;
+        /**
+         * 查询耗时的指数移动平均，纳秒
+         */
+        private final AtomicLong latency = new AtomicLong();
+
+        Replica(Configuration configuration, DataSource dataSource) {
+            this.dataSource = dataSource;
+            this.sqlQueryFactory = new SQLQueryFactory(configuration, new SpringConnectionProvider(dataSource));
+            this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            this.transactionTemplate.setReadOnly(true);
+        }
+
+        void recordLatency(long nanos) {
+            long current = latency.get();
+            long updated = 0 == current ? nanos : current + (nanos - current) / 8;
+            latency.compareAndSet(current, updated);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ccl.jersey.codegen;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -58,4 +59,28 @@ public interface SetCacheService extends CacheService {
      */
     public Set<Object> members(String key);
 
+    /**
+     * 批量放值，实现类可用管道一次提交
+     *
+     * @param key
+     * @param values
+     */
+    public default void addBulk(String key, Collection<?> values) {
+        for (Object value : values) {
+            add(key, value);
+        }
+    }
+
+    /**
+     * 批量删除值，实现类可用管道一次提交
+     *
+     * @param key
+     * @param values
+     */
+    public default void removeBulk(String key, Collection<?> values) {
+        for (Object value : values) {
+            remove(key, value);
+        }
+    }
+
 }
@@ -8,7 +8,14 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.util.*;
 import java.util.Map.Entry;
-
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按插入顺序保存的数据映射集，序列化为键值对数组
+ * <p>
+ * 超过 {@link #LINEAR_SCAN_THRESHOLD} 项时按键建立开放寻址的散列索引，查找和追加为常数时间；
+ * 索引在列表结构变化或已建索引的项被改键后失效，下次查找时重建。列表中有重复键时以第一项为准。
+ */
 @XmlRootElement
 @Label("数据映射集")
 public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
@@ -19,6 +26,31 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 	 */
 	private static final long serialVersionUID = 902996385230541320L;
 
+	/**
+	 * 不超过该项数时直接顺序查找，不建索引
+	 */
+	static final int LINEAR_SCAN_THRESHOLD = 8;
+
+	/**
+	 * 键的散列索引，槽中为列表位置+1，0为空槽，线性探测；负载不超过一半
+	 */
+	private transient int[] keyIndex;
+
+	/**
+	 * 建立索引时的modCount，与当前不一致时索引失效
+	 */
+	private transient int keyIndexModCount;
+
+	/**
+	 * 已建索引的项被改键的次数；项可被多个映射集共用，改键时使所有索引失效
+	 */
+	private static final AtomicInteger KEY_CHANGES = new AtomicInteger();
+
+	/**
+	 * 建立索引时的 {@link #KEY_CHANGES}
+	 */
+	private transient int keyIndexKeyChanges;
+
 	public SimpleDataMap() {
 		super();
 	}
@@ -37,7 +69,17 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 		if (null == e) {
 			return false;
 		}
-		return super.add(e);
+		boolean indexed = isKeyIndexValid();
+		super.add(e);
+		if (indexed) {
+			if (size() * 2 > keyIndex.length) {
+				keyIndex = null;
+			} else {
+				index(keyIndex, size() - 1);
+				keyIndexModCount = modCount;
+			}
+		}
+		return true;
 	}
 
 	@Override
@@ -49,6 +91,19 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 		super.add(index, element);
 	}
 
+	@Override
+	public DataEntry set(int index, DataEntry element) {
+		keyIndex = null;
+		return super.set(index, element);
+	}
+
+	@Override
+	public Object clone() {
+		SimpleDataMap clone = (SimpleDataMap) super.clone();
+		clone.keyIndex = null;
+		return clone;
+	}
+
 	@Override
 	public void putAll(DataMap<String, Object> dataMap) {
 		if (null != dataMap) {
@@ -76,6 +131,11 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 		@Label("值")
 		private Object value;
 
+		/**
+		 * 是否已加入过索引，未加入的项(如反序列化中的项)改键不影响索引
+		 */
+		private transient boolean indexed;
+
 		public DataEntry() {
 		}
 
@@ -89,6 +149,9 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 		}
 
 		public void setKey(String key) {
+			if (indexed && !Objects.equals(this.key, key)) {
+				KEY_CHANGES.incrementAndGet();
+			}
 			this.key = key;
 		}
 
@@ -142,20 +205,7 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 
 	@Override
 	public boolean containsKey(String key) {
-		if (null == key) {
-			for (DataEntry dataEntry : this) {
-				if (null == dataEntry.key) {
-					return true;
-				}
-			}
-		} else {
-			for (DataEntry dataEntry : this) {
-				if (key.equals(dataEntry.key)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return indexOfKey(key) >= 0;
 	}
 
 	@Override
@@ -178,44 +228,33 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 
 	@Override
 	public Object get(String key) {
-		if (null == key) {
-			for (DataEntry dataEntry : this) {
-				if (null == dataEntry.key) {
-					return dataEntry.value;
-				}
-			}
-		} else {
-			for (DataEntry dataEntry : this) {
-				if (key.equals(dataEntry.key)) {
-					return dataEntry.value;
-				}
-			}
-		}
-		return null;
+		int position = indexOfKey(key);
+		return position < 0 ? null : get(position).value;
 	}
 
 	@Override
 	public Object put(String key, Object value) {
-		Object old = get(key);
-		DataEntry dataEntry = new DataEntry(key, value);
-		this.add(dataEntry);
-		return old;
+		int position = indexOfKey(key);
+		if (position < 0) {
+			this.add(new DataEntry(key, value));
+			return null;
+		}
+		// 原位替换，键和位置不变，索引仍然有效
+		return super.set(position, new DataEntry(key, value)).value;
 	}
 
 	@Override
 	public Object removeByKey(String key) {
-		Object old = get(key);
-		Iterator<DataEntry> iterator = this.iterator();
+		int position = indexOfKey(key);
+		if (position < 0) {
+			return null;
+		}
+		Object old = get(position).value;
+		Iterator<DataEntry> iterator = this.listIterator(position);
 		while (iterator.hasNext()) {
-			DataEntry dataEntry = (DataEntry) iterator.next();
-			if (null == key) {
-				if (null == dataEntry.key) {
-					iterator.remove();
-				}
-			} else {
-				if (key.equals(dataEntry.key)) {
-					iterator.remove();
-				}
+			DataEntry dataEntry = iterator.next();
+			if (null != dataEntry && Objects.equals(key, dataEntry.key)) {
+				iterator.remove();
 			}
 		}
 		return old;
@@ -225,8 +264,7 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 	public void putAll(Map<String, Object> m) {
 		if (null != m) {
 			for (Entry<String, Object> entry : m.entrySet()) {
-				DataEntry dataEntry = new DataEntry(entry.getKey(), entry.getValue());
-				this.add(dataEntry);
+				this.put(entry.getKey(), entry.getValue());
 			}
 		}
 
@@ -234,7 +272,7 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 
 	@Override
 	public Set<String> keySet() {
-		Set<String> keySet = new HashSet<>();
+		Set<String> keySet = new LinkedHashSet<>();
 		for (DataEntry dataEntry : this) {
 			keySet.add(dataEntry.key);
 		}
@@ -252,7 +290,7 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 
 	@Override
 	public Set<Entry<String, Object>> entrySet() {
-		Set<Entry<String, Object>> entrySet = new HashSet<>();
+		Set<Entry<String, Object>> entrySet = new LinkedHashSet<>();
 		for (DataEntry dataEntry : this) {
 			entrySet.add(dataEntry);
 		}
@@ -268,4 +306,79 @@ public class SimpleDataMap extends ArrayList<SimpleDataMap.DataEntry> implements
 		return map;
 	}
 
+	private int indexOfKey(String key) {
+		int size = size();
+		if (size <= LINEAR_SCAN_THRESHOLD) {
+			for (int i = 0; i < size; i++) {
+				DataEntry dataEntry = get(i);
+				if (null != dataEntry && Objects.equals(key, dataEntry.key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int[] table = getKeyIndex();
+		int mask = table.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			int position = table[slot] - 1;
+			if (position < 0) {
+				return -1;
+			}
+			if (Objects.equals(key, get(position).key)) {
+				return position;
+			}
+		}
+	}
+
+	private boolean isKeyIndexValid() {
+		return null != keyIndex && keyIndexModCount == modCount
+				&& keyIndexKeyChanges == KEY_CHANGES.get();
+	}
+
+	private int[] getKeyIndex() {
+		if (isKeyIndexValid()) {
+			return keyIndex;
+		}
+		int keyChanges = KEY_CHANGES.get();
+		int size = size();
+		int[] table = new int[Integer.highestOneBit(Math.max(size, LINEAR_SCAN_THRESHOLD) * 2) << 1];
+		for (int i = 0; i < size; i++) {
+			index(table, i);
+		}
+		keyIndex = table;
+		keyIndexModCount = modCount;
+		keyIndexKeyChanges = keyChanges;
+		return table;
+	}
+
+	/**
+	 * 把列表位置加入索引，键已存在时保留先出现的位置
+	 */
+	private void index(int[] table, int position) {
+		DataEntry dataEntry = get(position);
+		if (null == dataEntry) {
+			return;
+		}
+		dataEntry.indexed = true;
+		int mask = table.length - 1;
+		for (int slot = hash(dataEntry.key) & mask; ; slot = (slot + 1) & mask) {
+			int existing = table[slot] - 1;
+			if (existing < 0) {
+				table[slot] = position + 1;
+				return;
+			}
+			if (Objects.equals(dataEntry.key, get(existing).key)) {
+				return;
+			}
+		}
+	}
+
+	private static int hash(String key) {
+		if (null == key) {
+			return 0;
+		}
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
 }
@@ -11,8 +11,8 @@ import org.springframework.util.ReflectionUtils;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Simple implementation of {@link EntityPathResolver} to lookup a query class
@@ -73,7 +73,7 @@ public enum SimpleEntityPathResolver implements EntityPathResolver {
 		}
 	}
 
-	Map<RelationalPath<?>, PathBuilder<?>> pathBuilderRegister = new HashMap<>();
+	Map<RelationalPath<?>, PathBuilder<?>> pathBuilderRegister = new ConcurrentHashMap<>();
 
 	@SuppressWarnings("unchecked")
 	@Override
@@ -0,0 +1,347 @@
+package com.ccl.jersey.codegen;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.sql.RelationalPath;
+import com.querydsl.sql.SQLDetailedListener;
+import com.querydsl.sql.SQLListenerContext;
+import com.querydsl.sql.dml.SQLInsertBatch;
+import com.querydsl.sql.dml.SQLMergeBatch;
+import com.querydsl.sql.dml.SQLUpdateBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.ObjectName;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * SQL执行统计，按语句形态(带占位符的SQL)记录执行次数、耗时分布、影响行数和失败次数
+ * <p>
+ * 计时从 preExecute 到 executed，只包含数据库执行的时间；关闭后各回调直接返回。
+ * 列表的行数由 {@link AbstractQueryDslRepository#query(QueryDslRepository.Query)} 在查询返回后记入当前线程最后执行的语句，
+ * 增删改的影响行数由执行处调用 {@link #recordRows(long)} 记入。
+ *
+ * @author ccl
+ */
+public final class SqlMetrics implements SQLDetailedListener, SqlMetricsMBean {
+
+    static final Logger logger = LoggerFactory.getLogger(SqlMetrics.class);
+
+    private static final String START_TIME = SqlMetrics.class.getName() + ".start";
+
+    /**
+     * 最多统计的语句形态数，超出的计入 {@link #OTHER_STATEMENTS}
+     */
+    private static final int MAX_STATEMENTS = 500;
+
+    private static final String OTHER_STATEMENTS = "<other>";
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    private static final SqlMetrics DEFAULT = new SqlMetrics();
+
+    private static final ThreadLocal<StatementStats> LAST_STATEMENT = new ThreadLocal<>();
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled = true;
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(DEFAULT,
+                    new ObjectName("com.ccl.jersey.codegen:type=SqlMetrics"));
+        } catch (InstanceAlreadyExistsException ignored) {
+        } catch (Exception e) {
+            logger.warn("Register SqlMetrics MBean failed", e);
+        }
+    }
+
+    /**
+     * 所有 {@link QueryDslConfig} 共用的实例
+     *
+     * @return
+     */
+    public static SqlMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 把行数记入当前线程最后执行的语句，增删改在执行处传入影响行数
+     *
+     * @param rows
+     * @return 传入的行数
+     */
+    public static long recordRows(long rows) {
+        StatementStats stats = LAST_STATEMENT.get();
+        if (null != stats) {
+            LAST_STATEMENT.remove();
+            if (rows > 0) {
+                stats.rows.add(rows);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 把查询结果的行数记入当前线程最后执行的语句：只统计列表的长度，其他结果(计数、迭代器等)不计行数
+     *
+     * @param result
+     */
+    static void recordResult(Object result) {
+        if (result instanceof Collection) {
+            recordRows(((Collection<?>) result).size());
+        } else {
+            LAST_STATEMENT.remove();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+    }
+
+    @Override
+    public String[] getSlowestStatements() {
+        List<StatementSnapshot> snapshots = getSlowestStatements(20);
+        String[] result = new String[snapshots.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = snapshots.get(i).toString();
+        }
+        return result;
+    }
+
+    /**
+     * 按p99耗时倒序返回语句统计
+     *
+     * @param limit
+     * @return
+     */
+    public List<StatementSnapshot> getSlowestStatements(int limit) {
+        List<StatementSnapshot> snapshots = new ArrayList<>(statements.size());
+        for (Map.Entry<String, StatementStats> entry : statements.entrySet()) {
+            snapshots.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        snapshots.sort((a, b) -> Long.compare(b.getP99(), a.getP99()));
+        return snapshots.subList(0, Math.min(Math.max(limit, 0), snapshots.size()));
+    }
+
+    @Override
+    public void preExecute(SQLListenerContext context) {
+        if (enabled) {
+            context.setData(START_TIME, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void executed(SQLListenerContext context) {
+        Object start = context.getData(START_TIME);
+        if (null == start) {
+            return;
+        }
+        if (null == context.getSQL()) {
+            LAST_STATEMENT.remove();
+            return;
+        }
+        StatementStats stats = getStats(context.getSQL());
+        stats.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - (Long) start));
+        LAST_STATEMENT.set(stats);
+    }
+
+    @Override
+    public void exception(SQLListenerContext context) {
+        if (enabled && null != context.getSQL()) {
+            getStats(context.getSQL()).errors.increment();
+        }
+        LAST_STATEMENT.remove();
+    }
+
+    private StatementStats getStats(String sql) {
+        String shape = PARAMETER_LIST.matcher(sql).replaceAll("?, ...");
+        StatementStats stats = statements.get(shape);
+        if (null == stats) {
+            if (statements.size() >= MAX_STATEMENTS) {
+                shape = OTHER_STATEMENTS;
+            }
+            stats = statements.computeIfAbsent(shape, key -> new StatementStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void start(SQLListenerContext context) {
+    }
+
+    @Override
+    public void preRender(SQLListenerContext context) {
+    }
+
+    @Override
+    public void rendered(SQLListenerContext context) {
+    }
+
+    @Override
+    public void prePrepare(SQLListenerContext context) {
+    }
+
+    @Override
+    public void prepared(SQLListenerContext context) {
+    }
+
+    @Override
+    public void end(SQLListenerContext context) {
+    }
+
+    @Override
+    public void notifyQuery(QueryMetadata md) {
+    }
+
+    @Override
+    public void notifyDelete(RelationalPath<?> entity, QueryMetadata md) {
+    }
+
+    @Override
+    public void notifyDeletes(RelationalPath<?> entity, List<QueryMetadata> batches) {
+    }
+
+    @Override
+    public void notifyMerge(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> keys, List<Path<?>> columns, List<Expression<?>> values, SubQueryExpression<?> subQuery) {
+    }
+
+    @Override
+    public void notifyMerges(RelationalPath<?> entity, QueryMetadata md, List<SQLMergeBatch> batches) {
+    }
+
+    @Override
+    public void notifyInsert(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> columns, List<Expression<?>> values, SubQueryExpression<?> subQuery) {
+    }
+
+    @Override
+    public void notifyInserts(RelationalPath<?> entity, QueryMetadata md, List<SQLInsertBatch> batches) {
+    }
+
+    @Override
+    public void notifyUpdate(RelationalPath<?> entity, QueryMetadata md, Map<Path<?>, Expression<?>> updates) {
+    }
+
+    @Override
+    public void notifyUpdates(RelationalPath<?> entity, List<SQLUpdateBatch> batches) {
+    }
+
+    private static final class StatementStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final AtomicLong maxMicros = new AtomicLong();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        void record(long micros) {
+            count.increment();
+            totalMicros.add(micros);
+            histogram.record(micros);
+            long max = maxMicros.get();
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+        }
+
+        StatementSnapshot snapshot(String sql) {
+            long executed = count.sum();
+            return new StatementSnapshot(sql, executed, errors.sum(), rows.sum(),
+                    0 == executed ? 0 : totalMicros.sum() / executed,
+                    histogram.percentile(50), histogram.percentile(90), histogram.percentile(99), maxMicros.get());
+        }
+    }
+
+    /**
+     * 一种语句形态的统计，耗时单位为微秒
+     */
+    public static class StatementSnapshot implements Serializable {
+        private final String sql;
+        private final long count;
+        private final long errors;
+        private final long rows;
+        private final long mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        public StatementSnapshot(String sql, long count, long errors, long rows, long mean, long p50, long p90, long p99, long max) {
+            this.sql = sql;
+            this.count = count;
+            this.errors = errors;
+            this.rows = rows;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d errors=%d rows=%d mean=%dus p50=%dus p90=%dus p99=%dus max=%dus %s",
+                    count, errors, rows, mean, p50, p90, p99, max, sql);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.ccl.jersey.codegen;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import java.util.List;
+
+/**
+ * SQL执行统计
+ * <p>
+ * 统计中的语句会暴露表结构，且接口没有鉴权，默认不注册；以 -D{@value #ENABLED_PROPERTY}=true 启动时才注册。
+ * 清空统计只通过JMX的 {@link SqlMetricsMBean#reset()}。
+ *
+ * @author ccl
+ */
+@Path("/metrics/sql")
+public class SqlMetricsAction {
+
+    /**
+     * 开启接口的系统属性
+     */
+    public static final String ENABLED_PROPERTY = "jersey.sqlMetrics";
+
+    /**
+     * @return 是否注册本接口
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    //访问路径 /metrics/sql?limit=20
+    public List<SqlMetrics.StatementSnapshot> slowest(@QueryParam("limit") @DefaultValue("20") int limit) {
+        return SqlMetrics.getDefault().getSlowestStatements(limit);
+    }
+}
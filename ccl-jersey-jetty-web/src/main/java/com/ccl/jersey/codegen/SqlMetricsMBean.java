@@ -0,0 +1,22 @@
+package com.ccl.jersey.codegen;
+
+/**
+ * {@link SqlMetrics} 的JMX接口
+ *
+ * @author ccl
+ */
+public interface SqlMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * 按p99耗时倒序的前20种语句
+     *
+     * @return
+     */
+    String[] getSlowestStatements();
+
+    void reset();
+}
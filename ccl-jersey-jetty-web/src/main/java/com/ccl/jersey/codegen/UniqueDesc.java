@@ -0,0 +1,91 @@
+package com.ccl.jersey.codegen;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 實體對象上 {@link Unique}、{@link Uniques} 标注的解析结果，每个实体类只解析一次
+ *
+ * @author ccl
+ */
+final class UniqueDesc {
+
+    private static final Map<Class<?>, List<UniqueDesc>> CACHED_UNIQUES = new ConcurrentHashMap<>();
+
+    private final Unique unique;
+
+    private final String[] properties;
+
+    private final Field[] fields;
+
+    private UniqueDesc(Class<?> entityClass, Unique unique) {
+        this.unique = unique;
+        this.properties = unique.value();
+        this.fields = new Field[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            fields[i] = FieldUtils.getDeclaredField(entityClass, properties[i], true);
+            if (null == fields[i]) {
+                throw new RuntimeException(Messages.getMessage("Jupiter.Persistence.ReadProperty.Error"));
+            }
+        }
+    }
+
+    /**
+     * 获取实体类的唯一键
+     *
+     * @param entityClass
+     * @return
+     */
+    static List<UniqueDesc> getUniqueDescs(Class<?> entityClass) {
+        List<UniqueDesc> uniqueDescs = CACHED_UNIQUES.get(entityClass);
+        if (null == uniqueDescs) {
+            List<UniqueDesc> list = new ArrayList<>();
+            Uniques uniques = entityClass.getAnnotation(Uniques.class);
+            if (null != uniques) {
+                for (Unique unique : uniques.values()) {
+                    list.add(new UniqueDesc(entityClass, unique));
+                }
+            }
+            Unique unique = entityClass.getAnnotation(Unique.class);
+            if (null != unique) {
+                list.add(new UniqueDesc(entityClass, unique));
+            }
+            uniqueDescs = Collections.unmodifiableList(list);
+            CACHED_UNIQUES.put(entityClass, uniqueDescs);
+        }
+        return uniqueDescs;
+    }
+
+    Unique getUnique() {
+        return unique;
+    }
+
+    String[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * 读取实体在唯一键各属性上的值，全部为null时返回null
+     *
+     * @param entity
+     * @return
+     * @throws IllegalAccessException
+     */
+    Object[] readValues(Object entity) throws IllegalAccessException {
+        Object[] values = new Object[fields.length];
+        boolean isEmpty = true;
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = fields[i].get(entity);
+            if (null != values[i]) {
+                isEmpty = false;
+            }
+        }
+        return isEmpty ? null : values;
+    }
+}
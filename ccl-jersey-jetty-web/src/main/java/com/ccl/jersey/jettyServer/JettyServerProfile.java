@@ -0,0 +1,254 @@
+package com.ccl.jersey.jettyServer;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlets.GzipFilter;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import javax.servlet.DispatcherType;
+import java.util.EnumSet;
+
+/**
+ * 面向高并发的Jetty服务配置：线程池、接收与选择线程数、连接参数、缓冲池和JSON响应压缩
+ * <p>
+ * 各项可用 -Djetty.xxx 系统属性覆盖，见 {@link #fromSystemProperties()}。
+ * 当前使用的Jetty 9.2没有HTTP/2模块，连接器只提供HTTP/1.1长连接；升级到9.3以上后可在 {@link #createServer()} 中加入h2c连接工厂。
+ *
+ * @author ccl
+ */
+public class JettyServerProfile {
+
+    /**
+     * 平台线程池
+     */
+    public static final String QUEUED_THREAD_POOL = "queued";
+
+    /**
+     * 虚拟线程，运行环境不支持时退回平台线程池
+     */
+    public static final String VIRTUAL_THREAD_POOL = "virtual";
+
+    private int port = 8088;
+
+    private String threadPool = QUEUED_THREAD_POOL;
+
+    private int minThreads = 16;
+
+    private int maxThreads = 200;
+
+    /**
+     * 等待线程的请求数上限，超出时拒绝，避免请求在队列里无限堆积
+     */
+    private int maxQueued = 6000;
+
+    private int threadIdleTimeout = 60000;
+
+    /**
+     * 接收线程数，-1表示按CPU数由Jetty决定
+     */
+    private int acceptors = -1;
+
+    /**
+     * 选择器线程数，-1表示按CPU数由Jetty决定
+     */
+    private int selectors = -1;
+
+    private int acceptQueueSize = 1024;
+
+    private long idleTimeout = 30000;
+
+    private int outputBufferSize = 32 * 1024;
+
+    private int requestHeaderSize = 8 * 1024;
+
+    private int responseHeaderSize = 8 * 1024;
+
+    /**
+     * 缓冲池中缓存的最大缓冲区，更大的缓冲区用完即丢弃
+     */
+    private int maxPooledBufferSize = 64 * 1024;
+
+    private boolean gzip = true;
+
+    /**
+     * 响应超过该字节数才压缩
+     */
+    private int gzipMinSize = 1024;
+
+    private String gzipMimeTypes = "application/json,text/plain,text/html,text/css,application/javascript";
+
+    /**
+     * 按 -Djetty.xxx 系统属性创建，未设置的项使用默认值
+     * <p>
+     * 可用属性：port、threadPool(queued/virtual)、minThreads、maxThreads、maxQueued、threadIdleTimeout、
+     * acceptors、selectors、acceptQueueSize、idleTimeout、outputBufferSize、requestHeaderSize、
+     * responseHeaderSize、maxPooledBufferSize、gzip、gzipMinSize、gzipMimeTypes
+     *
+     * @return
+     */
+    public static JettyServerProfile fromSystemProperties() {
+        JettyServerProfile profile = new JettyServerProfile();
+        profile.port = Integer.getInteger("jetty.port", profile.port);
+        profile.threadPool = System.getProperty("jetty.threadPool", profile.threadPool);
+        profile.minThreads = Integer.getInteger("jetty.minThreads", profile.minThreads);
+        profile.maxThreads = Integer.getInteger("jetty.maxThreads", profile.maxThreads);
+        profile.maxQueued = Integer.getInteger("jetty.maxQueued", profile.maxQueued);
+        profile.threadIdleTimeout = Integer.getInteger("jetty.threadIdleTimeout", profile.threadIdleTimeout);
+        profile.acceptors = Integer.getInteger("jetty.acceptors", profile.acceptors);
+        profile.selectors = Integer.getInteger("jetty.selectors", profile.selectors);
+        profile.acceptQueueSize = Integer.getInteger("jetty.acceptQueueSize", profile.acceptQueueSize);
+        profile.idleTimeout = Long.getLong("jetty.idleTimeout", profile.idleTimeout);
+        profile.outputBufferSize = Integer.getInteger("jetty.outputBufferSize", profile.outputBufferSize);
+        profile.requestHeaderSize = Integer.getInteger("jetty.requestHeaderSize", profile.requestHeaderSize);
+        profile.responseHeaderSize = Integer.getInteger("jetty.responseHeaderSize", profile.responseHeaderSize);
+        profile.maxPooledBufferSize = Integer.getInteger("jetty.maxPooledBufferSize", profile.maxPooledBufferSize);
+        profile.gzip = Boolean.parseBoolean(System.getProperty("jetty.gzip", String.valueOf(profile.gzip)));
+        profile.gzipMinSize = Integer.getInteger("jetty.gzipMinSize", profile.gzipMinSize);
+        profile.gzipMimeTypes = System.getProperty("jetty.gzipMimeTypes", profile.gzipMimeTypes);
+        return profile;
+    }
+
+    /**
+     * 按配置创建服务，连接器已加入，处理器由调用方设置
+     *
+     * @return
+     */
+    public Server createServer() {
+        Server server = new Server(createThreadPool());
+
+        HttpConfiguration httpConfiguration = new HttpConfiguration();
+        httpConfiguration.setOutputBufferSize(outputBufferSize);
+        httpConfiguration.setRequestHeaderSize(requestHeaderSize);
+        httpConfiguration.setResponseHeaderSize(responseHeaderSize);
+        httpConfiguration.setSendServerVersion(false);
+        httpConfiguration.setSendXPoweredBy(false);
+
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(0, 1024, maxPooledBufferSize);
+        ServerConnector connector = new ServerConnector(server, null, null, bufferPool, acceptors, selectors,
+                new HttpConnectionFactory(httpConfiguration));
+        connector.setPort(port);
+        connector.setAcceptQueueSize(acceptQueueSize);
+        connector.setIdleTimeout(idleTimeout);
+        connector.setReuseAddress(true);
+        server.addConnector(connector);
+        server.setStopAtShutdown(true);
+        return server;
+    }
+
+    /**
+     * 为上下文加上响应压缩，只压缩配置的内容类型中超过 gzipMinSize 的响应
+     *
+     * @param context
+     */
+    public void configureGzip(ServletContextHandler context) {
+        if (!gzip) {
+            return;
+        }
+        FilterHolder filterHolder = new FilterHolder(GzipFilter.class);
+        filterHolder.setInitParameter("minGzipSize", String.valueOf(gzipMinSize));
+        filterHolder.setInitParameter("mimeTypes", gzipMimeTypes);
+        filterHolder.setInitParameter("methods", "GET,POST,PUT");
+        filterHolder.setInitParameter("bufferSize", String.valueOf(outputBufferSize));
+        context.addFilter(filterHolder, "/*", EnumSet.of(DispatcherType.REQUEST));
+    }
+
+    private ThreadPool createThreadPool() {
+        if (VIRTUAL_THREAD_POOL.equals(threadPool)) {
+            ThreadPool virtualThreadPool = VirtualThreadPool.create();
+            if (null != virtualThreadPool) {
+                return virtualThreadPool;
+            }
+        }
+        QueuedThreadPool queuedThreadPool = new QueuedThreadPool(maxThreads, minThreads, threadIdleTimeout,
+                new BlockingArrayQueue<>(minThreads, minThreads, maxQueued));
+        queuedThreadPool.setName("jetty-http");
+        return queuedThreadPool;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getThreadPool() {
+        return threadPool;
+    }
+
+    public void setThreadPool(String threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public void setMinThreads(int minThreads) {
+        this.minThreads = minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    public void setAcceptors(int acceptors) {
+        this.acceptors = acceptors;
+    }
+
+    public int getSelectors() {
+        return selectors;
+    }
+
+    public void setSelectors(int selectors) {
+        this.selectors = selectors;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public int getGzipMinSize() {
+        return gzipMinSize;
+    }
+
+    public void setGzipMinSize(int gzipMinSize) {
+        this.gzipMinSize = gzipMinSize;
+    }
+}
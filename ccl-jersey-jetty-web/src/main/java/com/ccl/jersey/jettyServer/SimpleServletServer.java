@@ -4,6 +4,7 @@ package com.ccl.jersey.jettyServer;
  * Created by ccl on 17/8/9.
  */
 
+import com.ccl.jersey.codegen.SqlMetricsAction;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -14,15 +15,20 @@ import org.glassfish.jersey.servlet.ServletContainer;
 public class SimpleServletServer {
     public static void main(String[] args) throws Exception {
         try {
-            Server server = new Server(8088);//1.建立server，设置端口
+            JettyServerProfile profile = JettyServerProfile.fromSystemProperties();
+            Server server = profile.createServer();//1.建立server，设置端口，端口和连接参数见JettyServerProfile
             // Create JAX-RS application.
             final ResourceConfig application = new ResourceConfig()
                     .packages("com.ccl.jersey.action")
                     .register(JacksonFeature.class);
+            if (SqlMetricsAction.isEnabled()) {
+                application.register(SqlMetricsAction.class);
+            }
 
             ServletHolder sh = new ServletHolder(new ServletContainer(application));//2.servlet
 
             ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS); //4.上下文
+            profile.configureGzip(context);
             //项目入口、若改为"/"，则为http://8080/加resource路径，而不是http://8080/jettyDemo/+resource
             context.setContextPath("/");
             //在项目入口下，添加servlet的路径，此处即处理/jettyDemo/下的resource
@@ -4,6 +4,7 @@ package com.ccl.jersey.jettyServer;
  * Created by ccl on 17/8/9.
  */
 
+import com.ccl.jersey.codegen.SqlMetricsAction;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
@@ -17,15 +18,20 @@ import org.glassfish.jersey.servlet.ServletContainer;
 public class SimpleServletWebappServer {
     public static void main(String[] args) throws Exception {
         try {
-            Server server = new Server(8088);//1.建立server，设置端口
+            JettyServerProfile profile = JettyServerProfile.fromSystemProperties();
+            Server server = profile.createServer();//1.建立server，设置端口，端口和连接参数见JettyServerProfile
             // Create JAX-RS application.
             final ResourceConfig application = new ResourceConfig()
                     .packages("com.ccl.jersey.action")
                     .register(JacksonFeature.class);
+            if (SqlMetricsAction.isEnabled()) {
+                application.register(SqlMetricsAction.class);
+            }
 
             ServletHolder sh = new ServletHolder(new ServletContainer(application));//2.servlet
 
             ServletContextHandler servletContext = new ServletContextHandler(ServletContextHandler.SESSIONS);
+            profile.configureGzip(servletContext);
             servletContext.setContextPath("/rest");
             servletContext.addServlet(sh,"/*");
 //            servletContext.addServlet(new ServletHolder(new HelloServlet("Buongiorno Mondo")),"/it/*");
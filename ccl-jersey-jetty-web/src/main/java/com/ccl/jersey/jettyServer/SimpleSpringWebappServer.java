@@ -21,12 +21,14 @@ import org.springframework.web.context.support.AnnotationConfigWebApplicationCon
 public class SimpleSpringWebappServer {
     public static void main(String[] args) throws Exception {
         try {
-            Server server = new Server(8088);//1.建立server，设置端口
+            JettyServerProfile profile = JettyServerProfile.fromSystemProperties();
+            Server server = profile.createServer();//1.建立server，设置端口，端口和连接参数见JettyServerProfile
             //3.请求处理资源
             ApplicationConfig applicationConfig = new ApplicationConfig();
             ServletHolder sh = new ServletHolder(new ServletContainer(applicationConfig));
 
             ServletContextHandler servletContext = new ServletContextHandler(ServletContextHandler.SESSIONS);
+            profile.configureGzip(servletContext);
             servletContext.setContextPath("/rest");
             servletContext.addServlet(sh,"/*");
             servletContext.addEventListener(new ContextLoaderListener());
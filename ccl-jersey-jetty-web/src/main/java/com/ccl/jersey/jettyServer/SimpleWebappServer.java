@@ -10,7 +10,8 @@ import org.eclipse.jetty.webapp.WebAppContext;
 public class SimpleWebappServer {
     public static void main(String[] args) throws Exception {
         try {
-            Server server = new Server(8088);//1.建立server，设置端口
+            JettyServerProfile profile = JettyServerProfile.fromSystemProperties();
+            Server server = profile.createServer();//1.建立server，设置端口，端口和连接参数见JettyServerProfile
 
             WebAppContext webAppContext = new WebAppContext();
             webAppContext.setContextPath("/"); //4.上下文路径  http://localhost:8088/
@@ -0,0 +1,102 @@
+package com.ccl.jersey.jettyServer;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个任务一个虚拟线程的Jetty线程池，不限制并发数，数据库访问的并发由连接池限制
+ *
+ * @author ccl
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    static final Logger logger = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+    private final Method factory;
+
+    private volatile ExecutorService executor;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private VirtualThreadPool(Method factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return 运行环境不支持虚拟线程时为null
+     */
+    public static VirtualThreadPool create() {
+        try {
+            return new VirtualThreadPool(Executors.class.getMethod("newVirtualThreadPerTaskExecutor"));
+        } catch (NoSuchMethodException e) {
+            logger.warn("Virtual threads are not supported, fall back to QueuedThreadPool");
+            return null;
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        executor = (ExecutorService) factory.invoke(null);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        ExecutorService current = executor;
+        if (null != current) {
+            current.shutdown();
+            current.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        ExecutorService current = executor;
+        if (null == current) {
+            throw new RejectedExecutionException("Thread pool is not started");
+        }
+        current.execute(() -> {
+            running.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        ExecutorService current = executor;
+        if (null != current) {
+            while (!current.awaitTermination(1, TimeUnit.HOURS)) {
+                // 一直等到服务停止
+            }
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}